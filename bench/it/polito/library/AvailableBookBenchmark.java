@@ -0,0 +1,54 @@
+package it.polito.library;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of getAvailableBook as the copies of the title grow.
+ * Every copy but the last is rented, the worst case for a scan over the copies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+@State(Scope.Benchmark)
+public class AvailableBookBenchmark {
+
+	private static final String TITLE = "Dance Dance Dance";
+
+	@Param({ "10", "1000", "100000", "1000000" })
+	public int copies;
+
+	private LibraryManager library;
+
+	@Setup
+	public void setUp() throws LibException {
+		library = new LibraryManager();
+		for (int i = 0; i < copies; i++) {
+			library.addBook(TITLE);
+		}
+		for (int i = 0; i < copies - 1; i++) {
+			library.addReader("Maria", "Verdi");
+			String id = Integer.toString(1000 + i);
+			library.startRental(id, id, "12-07-2023");
+		}
+	}
+
+	@Benchmark
+	public String getAvailableBook() throws LibException {
+		return library.getAvailableBook(TITLE);
+	}
+
+}
@@ -0,0 +1,85 @@
+package it.polito.library;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rentals from many threads on the per-copy claims against one lock around the library.
+ * Each thread rents and returns random copies as its own reader. Scale the threads with
+ * "-t 1", "-t 4", ... up to "-t 64".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentRentalBenchmark {
+
+	private static final int COPIES = 1024;
+	private static final int READERS = 256;
+
+	private LibraryManager library;
+	private final Object lock = new Object();
+	private final AtomicInteger readers = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class Reader {
+		final Random random = new Random();
+		String readerID;
+
+		@Setup
+		public void setUp(ConcurrentRentalBenchmark benchmark) {
+			readerID = Integer.toString(1000 + benchmark.readers.getAndIncrement() % READERS);
+		}
+
+		String nextCopy() {
+			return Integer.toString(1000 + random.nextInt(COPIES));
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		library = new LibraryManager();
+		for (int i = 0; i < COPIES; i++) {
+			library.addBook("Dance Dance Dance");
+		}
+		for (int i = 0; i < READERS; i++) {
+			library.addReader("Maria", "Verdi");
+		}
+	}
+
+	@Benchmark
+	public LibStatus striped(Reader reader) {
+		return rentAndReturn(reader.nextCopy(), reader.readerID);
+	}
+
+	@Benchmark
+	public LibStatus coarseLock(Reader reader) {
+		String bookID = reader.nextCopy();
+		synchronized (lock) {
+			return rentAndReturn(bookID, reader.readerID);
+		}
+	}
+
+	private LibStatus rentAndReturn(String bookID, String readerID) {
+		LibStatus status = library.tryStartRental(bookID, readerID, "12-07-2023");
+		if (status == LibStatus.OK) {
+			library.tryEndRental(bookID, readerID, "13-07-2023");
+		}
+		return status;
+	}
+
+}
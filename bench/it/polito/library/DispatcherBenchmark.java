@@ -0,0 +1,72 @@
+package it.polito.library;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to run ten thousand sessions that each wait a millisecond, as on a client,
+ * then rent and return their own copy. The default dispatcher, a thread per session,
+ * against a fixed pool of 200 platform threads.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatcherBenchmark {
+
+	private static final int SESSIONS = 10_000;
+	private static final int POOL = 200;
+
+	private LibraryManager library;
+
+	@Setup
+	public void setUp() {
+		library = new LibraryManager();
+		for (int i = 0; i < SESSIONS; i++) {
+			library.addBook("Dance Dance Dance");
+			library.addReader("Maria", "Verdi");
+		}
+	}
+
+	@Benchmark
+	public void threadPerSession() {
+		run(new LibraryDispatcher(library));
+	}
+
+	@Benchmark
+	public void fixedPool() {
+		ExecutorService pool = Executors.newFixedThreadPool(POOL);
+		run(new LibraryDispatcher(library, pool));
+	}
+
+	private static void run(LibraryDispatcher dispatcher) {
+		try (dispatcher) {
+			for (int i = 0; i < SESSIONS; i++) {
+				String id = Integer.toString(1000 + i);
+				dispatcher.dispatch((library) -> {
+					Thread.sleep(1);
+					LibStatus status = library.tryStartRental(id, id, "12-07-2023");
+					if (status == LibStatus.OK) {
+						library.tryEndRental(id, id, "13-07-2023");
+					}
+					return status;
+				});
+			}
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package it.polito.library;
+
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * getRentals with the bounded history cache, over more or fewer copies than it holds.
+ * A lookup returning the same map as the previous lookup of the copy was served from
+ * the cache, which the hits and misses counters report. The heap retained by a full
+ * cache is printed once per fork.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryCacheBenchmark {
+
+	private static final int RENTALS = 10;
+
+	@Param({ "256", "1024", "4096", "65536" })
+	public int copies;
+
+	// uniform, or 90% of the lookups on 10% of the copies
+	@Param({ "uniform", "hot" })
+	public String access;
+
+	private LibraryManager library;
+	private String[] ids;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Lookups {
+		public long hits;
+		public long misses;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			hits = 0;
+			misses = 0;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		final Random random = new Random(42);
+		SortedMap<?, ?>[] previous;
+
+		@Setup
+		public void setUp(HistoryCacheBenchmark benchmark) {
+			previous = new SortedMap<?, ?>[benchmark.copies];
+		}
+	}
+
+	@Setup
+	public void setUp() throws LibException {
+		library = new LibraryManager();
+		ids = new String[copies];
+		for (int i = 0; i < copies; i++) {
+			ids[i] = library.addBook("Dance Dance Dance");
+		}
+		for (int i = 0; i < RENTALS; i++) {
+			library.addReader("Maria", "Verdi");
+		}
+		for (int i = 0; i < RENTALS; i++) {
+			String readerID = Integer.toString(1000 + i);
+			for (String bookID : ids) {
+				library.startRental(bookID, readerID, "12-07-2023");
+				library.endRental(bookID, readerID, "13-07-2023");
+			}
+		}
+
+		long before = usedHeap();
+		for (String bookID : ids) {
+			library.getRentals(bookID);
+		}
+		long cache = usedHeap() - before;
+		int cached = Math.min(copies, 1024);
+		System.out.printf("%nHistory cache: about %d bytes for %d copies, %d bytes per copy%n",
+			cache, cached, cache / cached);
+	}
+
+	@Benchmark
+	public SortedMap<String, String> getRentals(Client client, Lookups lookups) throws LibException {
+		int copy;
+		if (access.equals("hot") && client.random.nextInt(10) != 0) {
+			copy = client.random.nextInt(Math.max(1, copies / 10));
+		} else {
+			copy = client.random.nextInt(copies);
+		}
+
+		SortedMap<String, String> rentals = library.getRentals(ids[copy]);
+		if (rentals == client.previous[copy]) {
+			lookups.hits++;
+		} else {
+			lookups.misses++;
+		}
+		client.previous[copy] = rentals;
+		return rentals;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,69 @@
+package it.polito.library;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Date codec against the {@link java.time.format.DateTimeFormatter} it replaces.
+ * Run with "-prof gc" to compare the allocations too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LibDatesBenchmark {
+
+	private static final int DATES = 1024;
+
+	private final String[] dates = new String[DATES];
+	private final int[] days = new int[DATES];
+	private final StringBuilder out = new StringBuilder(10);
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		long first = LocalDate.of(1950, 1, 1).toEpochDay();
+		for (int i = 0; i < DATES; i++) {
+			days[i] = (int) (first + random.nextInt(100 * 365));
+			dates[i] = LocalDate.ofEpochDay(days[i]).format(LibDates.LIB_FORMATTER);
+		}
+	}
+
+	@Benchmark
+	public int parseCodec() {
+		return LibDates.parse(dates[next++ & (DATES - 1)]);
+	}
+
+	@Benchmark
+	public long parseFormatter() {
+		return LocalDate.parse(dates[next++ & (DATES - 1)], LibDates.LIB_FORMATTER).toEpochDay();
+	}
+
+	@Benchmark
+	public StringBuilder formatCodec() {
+		out.setLength(0);
+		LibDates.format(days[next++ & (DATES - 1)], out);
+		return out;
+	}
+
+	@Benchmark
+	public String formatFormatter() {
+		return LocalDate.ofEpochDay(days[next++ & (DATES - 1)]).format(LibDates.LIB_FORMATTER);
+	}
+
+}
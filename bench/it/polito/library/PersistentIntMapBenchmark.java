@@ -0,0 +1,77 @@
+package it.polito.library;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The persistent map against a {@link HashMap} on dense keys, as the slots are:
+ * lookups, adding a key, and adding a key while keeping the previous version,
+ * which the hash map can only do by copying itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+@State(Scope.Thread)
+public class PersistentIntMapBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private PersistentIntMap persistent = PersistentIntMap.EMPTY;
+	private final Map<Integer, Integer> hash = new HashMap<>();
+	private final Random random = new Random(42);
+
+	@Setup
+	public void setUp() {
+		for (int key = 0; key < size; key++) {
+			persistent = persistent.put(key, key);
+			hash.put(key, key);
+		}
+	}
+
+	@Benchmark
+	public int getPersistent() {
+		return persistent.get(random.nextInt(size), -1);
+	}
+
+	@Benchmark
+	public Integer getHashMap() {
+		return hash.get(random.nextInt(size));
+	}
+
+	@Benchmark
+	public PersistentIntMap putPersistent() {
+		// the old version stays intact, so this is also the snapshot and put
+		return persistent.put(size, size);
+	}
+
+	@Benchmark
+	public Integer putHashMap() {
+		hash.put(size, size);
+		return hash.remove(size);
+	}
+
+	@Benchmark
+	public Map<Integer, Integer> copyPutHashMap() {
+		Map<Integer, Integer> copy = new HashMap<>(hash);
+		copy.put(size, size);
+		return copy;
+	}
+
+}
@@ -0,0 +1,81 @@
+package it.polito.library;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rentals submitted to the single-writer pipeline against calls under one lock around
+ * the library. Each thread rents and returns its own copy as its own reader, so no
+ * rental is rejected. Throughput and latency percentiles both; scale with "-t".
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+	private static final int READERS = 64;
+
+	private LibraryManager library;
+	private LibraryPipeline pipeline;
+	private final Object lock = new Object();
+	private final AtomicInteger threads = new AtomicInteger();
+
+	@State(Scope.Thread)
+	public static class Reader {
+		String id;
+
+		@Setup
+		public void setUp(PipelineBenchmark benchmark) {
+			id = Integer.toString(1000 + benchmark.threads.getAndIncrement() % READERS);
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		library = new LibraryManager();
+		for (int i = 0; i < READERS; i++) {
+			library.addBook("Dance Dance Dance");
+			library.addReader("Maria", "Verdi");
+		}
+		pipeline = new LibraryPipeline(library);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pipeline.close();
+	}
+
+	@Benchmark
+	public void pipeline(Reader reader) {
+		// the writer applies them in order, so the return follows the rental
+		CompletableFuture<Void> start = pipeline.startRental(reader.id, reader.id, "12-07-2023");
+		CompletableFuture<Void> end = pipeline.endRental(reader.id, reader.id, "13-07-2023");
+		start.join();
+		end.join();
+	}
+
+	@Benchmark
+	public void coarseLock(Reader reader) throws LibException {
+		synchronized (lock) {
+			library.startRental(reader.id, reader.id, "12-07-2023");
+			library.endRental(reader.id, reader.id, "13-07-2023");
+		}
+	}
+
+}
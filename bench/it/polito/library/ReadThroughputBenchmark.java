@@ -0,0 +1,104 @@
+package it.polito.library;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Query throughput while one thread keeps renting and returning copies, and without it.
+ * The readers cycle through getRentals, getAvailableBook, getTitles and getReaderName.
+ * Change the number of readers with "-tg 1,8" for the rentals group and "-tg 8" for
+ * the reads alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ReadThroughputBenchmark {
+
+	private static final String TITLE = "Dance Dance Dance";
+	private static final int COPIES = 1024;
+	private static final int READERS = 16;
+
+	private LibraryManager library;
+
+	@State(Scope.Thread)
+	public static class Client {
+		final Random random = new Random();
+		int next = 0;
+
+		String nextID(int count) {
+			return Integer.toString(1000 + random.nextInt(count));
+		}
+	}
+
+	@Setup
+	public void setUp() {
+		library = new LibraryManager();
+		for (int i = 0; i < COPIES; i++) {
+			library.addBook(TITLE);
+		}
+		for (int i = 0; i < READERS; i++) {
+			library.addReader("Maria", "Verdi");
+		}
+	}
+
+	@Benchmark
+	@Group("rentals")
+	@GroupThreads(1)
+	public LibStatus writer(Client client) {
+		String bookID = client.nextID(COPIES);
+		String readerID = client.nextID(READERS);
+		LibStatus status = library.tryStartRental(bookID, readerID, "12-07-2023");
+		if (status == LibStatus.OK) {
+			library.tryEndRental(bookID, readerID, "13-07-2023");
+		}
+		return status;
+	}
+
+	@Benchmark
+	@Group("rentals")
+	@GroupThreads(3)
+	public void readers(Client client, Blackhole blackhole) throws LibException {
+		read(client, blackhole);
+	}
+
+	@Benchmark
+	@Group("readsAlone")
+	@GroupThreads(3)
+	public void readersAlone(Client client, Blackhole blackhole) throws LibException {
+		read(client, blackhole);
+	}
+
+	private void read(Client client, Blackhole blackhole) throws LibException {
+		switch (client.next++ & 3) {
+		case 0:
+			blackhole.consume(library.getRentals(client.nextID(COPIES)));
+			break;
+		case 1:
+			blackhole.consume(library.getAvailableBook(TITLE));
+			break;
+		case 2:
+			blackhole.consume(library.getTitles());
+			break;
+		default:
+			blackhole.consume(library.getReaderName(client.nextID(READERS)));
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package it.polito.library;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * getTitles on the maintained index against rebuilding the sorted map on every call,
+ * as the library used to. Ten million titles need a larger heap than the default here:
+ * run with "-p titles=10000000 -jvmArgs -Xmx16g".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+@State(Scope.Benchmark)
+public class TitlesBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	public int titles;
+
+	private LibraryManager library;
+	// the same counts, unsorted, for the rebuild
+	private final Map<String, Integer> counts = new HashMap<>();
+
+	@Setup
+	public void setUp() {
+		library = new LibraryManager();
+		for (int i = 0; i < titles; i++) {
+			String title = "Title " + i;
+			library.addBook(title);
+			counts.put(title, 1);
+		}
+	}
+
+	@Benchmark
+	public SortedMap<String, Integer> maintainedIndex() {
+		return library.getTitles();
+	}
+
+	@Benchmark
+	public SortedMap<String, Integer> rebuild() {
+		return new TreeMap<>(counts);
+	}
+
+}
@@ -0,0 +1,70 @@
+package it.polito.library;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Status-returning rentals against catching the exception, when nine attempts in ten
+ * are rejected: nine of the ten copies stay rented, and a successful rental is ended
+ * straight away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TryRentalBenchmark {
+
+	private static final int COPIES = 10;
+
+	private LibraryManager library;
+	private final String[] ids = new String[COPIES];
+	private final String readerID = Integer.toString(1000 + COPIES - 1);
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws LibException {
+		library = new LibraryManager();
+		for (int i = 0; i < COPIES; i++) {
+			ids[i] = library.addBook("Dance Dance Dance");
+			library.addReader("Maria", "Verdi");
+		}
+		for (int i = 0; i < COPIES - 1; i++) {
+			library.startRental(ids[i], ids[i], "12-07-2023");
+		}
+	}
+
+	@Benchmark
+	public LibStatus tryStartRental() {
+		String bookID = ids[next++ % COPIES];
+		LibStatus status = library.tryStartRental(bookID, readerID, "13-07-2023");
+		if (status == LibStatus.OK) {
+			library.tryEndRental(bookID, readerID, "14-07-2023");
+		}
+		return status;
+	}
+
+	@Benchmark
+	public boolean startRental() {
+		String bookID = ids[next++ % COPIES];
+		try {
+			library.startRental(bookID, readerID, "13-07-2023");
+			library.endRental(bookID, readerID, "14-07-2023");
+			return true;
+		} catch (LibException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package it.polito.library;
+
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conversions between the "dd-MM-yyyy" dates of the public API and epoch days.
+ * Well formed dates are handled with plain arithmetic; anything else goes
+ * through {@link #LIB_FORMATTER}, so results and errors are the same as
+ * parsing and formatting with it directly.
+ */
+final class LibDates {
+
+	static final DateTimeFormatter LIB_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+	/** Result of {@link #tryParse(String)} for a date that {@link #parse(String)} rejects */
+	static final int INVALID = Integer.MIN_VALUE;
+
+	private static final int DAYS_0000_TO_1970 = 719468;
+	private static final int DAYS_PER_ERA = 146097;
+
+	private LibDates() {}
+
+	/**
+	 * Parses a date in the format "dd-MM-yyyy"
+	 *
+	 * @param date the date to parse
+	 * @return the date as epoch day
+	 * @throws DateTimeParseException if the date cannot be parsed, or its epoch day
+	 * does not fit an int other than {@link RentalLog#ONGOING}
+	 */
+	static int parse(String date) {
+		int epochDay = parseCommon(date);
+		return epochDay != INVALID ? epochDay : parseWithFormatter(date);
+	}
+
+	/**
+	 * Parses a date in the format "dd-MM-yyyy", without throwing
+	 *
+	 * @param date the date to parse
+	 * @return the date as epoch day, or {@link #INVALID} where {@link #parse(String)} would throw
+	 */
+	static int tryParse(String date) {
+		int epochDay = parseCommon(date);
+		if (epochDay != INVALID) {
+			return epochDay;
+		}
+
+		// text the formatter cannot even read is rejected without an exception
+		ParsePosition position = new ParsePosition(0);
+		if (LIB_FORMATTER.parseUnresolved(date, position) == null || position.getIndex() != date.length()) {
+			return INVALID;
+		}
+		try {
+			return parseWithFormatter(date);
+		} catch (DateTimeParseException e) {
+			return INVALID;
+		}
+	}
+
+	/**
+	 * @return the epoch day of a well formed date of the years 1 to 9999, or {@link #INVALID}
+	 */
+	private static int parseCommon(String date) {
+		if (date.length() == 10 && date.charAt(2) == '-' && date.charAt(5) == '-') {
+			int day = digits(date, 0, 2);
+			int month = digits(date, 3, 5);
+			int year = digits(date, 6, 10);
+
+			if (day >= 1 && day <= 31 && month >= 1 && month <= 12 && year >= 1) {
+				// like the formatter, days past the end of the month fall back to its last day
+				return toEpochDay(year, month, Math.min(day, lengthOfMonth(year, month)));
+			}
+		}
+		return INVALID;
+	}
+
+	private static int parseWithFormatter(String date) {
+		long epochDay = LocalDate.parse(date, LIB_FORMATTER).toEpochDay();
+		if (epochDay <= RentalLog.ONGOING || epochDay > Integer.MAX_VALUE) {
+			throw new DateTimeParseException("Date out of range: " + date, date, 0);
+		}
+		return (int) epochDay;
+	}
+
+	/**
+	 * Appends a date in the format "dd-MM-yyyy"
+	 *
+	 * @param epochDay the date as epoch day
+	 * @param out the buffer the date is appended to
+	 */
+	static void format(int epochDay, StringBuilder out) {
+		// civil date from days, with eras of 400 years starting on March 1st
+		int days = epochDay + DAYS_0000_TO_1970;
+		int era = Math.floorDiv(days, DAYS_PER_ERA);
+		int dayOfEra = days - era * DAYS_PER_ERA;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		if (year < 1 || year > 9999) {
+			out.append(LocalDate.ofEpochDay(epochDay).format(LIB_FORMATTER));
+			return;
+		}
+
+		out.append((char) ('0' + day / 10)).append((char) ('0' + day % 10)).append('-')
+			.append((char) ('0' + month / 10)).append((char) ('0' + month % 10)).append('-')
+			.append((char) ('0' + year / 1000)).append((char) ('0' + year / 100 % 10))
+			.append((char) ('0' + year / 10 % 10)).append((char) ('0' + year % 10));
+	}
+
+	private static int digits(String s, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+				return leap ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	private static int toEpochDay(int year, int month, int day) {
+		// days from civil date, with eras of 400 years starting on March 1st
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+	}
+
+}
@@ -4,9 +4,40 @@ public class LibException extends Exception {
 
 	private static final long serialVersionUID = 1L;
 
-	public LibException() {super("Library exception");}
-	
-	public LibException(String msg) {super(msg);}
+	/**
+	 * Kinds of errors reported by the library
+	 */
+	public enum Code {
+		/** error created from a message only */
+		GENERIC,
+		/** a book, copy or reader is not in the archive */
+		NOT_PRESENT,
+		/** the copy is already rented or the reader is already renting */
+		ALREADY_RENTED,
+		/** the copy is not rented by the reader */
+		NOT_RENTED
+	}
 
-}
+	private final Code code;
+
+	public LibException() {super("Library exception"); code = Code.GENERIC;}
+
+	public LibException(String msg) {super(msg); code = Code.GENERIC;}
 
+	/**
+	 * Creates an exception without stack trace and suppressed exceptions.
+	 * Such an exception is cheap to throw and can be shared between throws.
+	 *
+	 * @param code the kind of error
+	 * @param msg the detail message
+	 */
+	public LibException(Code code, String msg) {
+		super(msg, null, false, false);
+		this.code = code;
+	}
+
+	public Code getCode() {
+		return code;
+	}
+
+}
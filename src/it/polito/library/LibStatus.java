@@ -0,0 +1,17 @@
+package it.polito.library;
+
+/**
+ * Outcome of the non-throwing operations of {@link LibraryManager}
+ */
+public enum LibStatus {
+	/** the operation was carried out */
+	OK,
+	/** the copy or the reader is not in the archive */
+	NOT_PRESENT,
+	/** the copy is already rented or the reader is already renting */
+	ALREADY_RENTED,
+	/** the copy is not rented by the reader */
+	NOT_RENTED,
+	/** the date is not a valid "dd-MM-yyyy" date */
+	INVALID_DATE
+}
@@ -0,0 +1,97 @@
+package it.polito.library;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs client sessions against a shared {@link LibraryManager}, one thread per session.
+ * On runtimes with virtual threads every session gets its own virtual thread, so
+ * thousands of sessions waiting on I/O cost no platform threads; elsewhere sessions
+ * run on a cached pool of platform threads.
+ * The library waits on {@link java.util.concurrent.locks.Lock}s, which do not pin
+ * virtual threads to their carrier, and on rentals of the same copy in progress,
+ * which it spins on only briefly before parking. The short updates of its concurrent
+ * maps may still hold a monitor, which pins a virtual thread on runtimes before JDK 24.
+ */
+public class LibraryDispatcher implements AutoCloseable {
+
+	/**
+	 * Work done by a client session
+	 */
+	public interface Session<T> {
+		T run(LibraryManager library) throws Exception;
+	}
+
+	private final LibraryManager library;
+	private final ExecutorService sessions;
+
+	public LibraryDispatcher(LibraryManager library) {
+		this(library, threadPerSession());
+	}
+
+	/**
+	 * @param library the library the sessions work on
+	 * @param sessions the executor running the sessions, shut down by {@link #close()}
+	 */
+	public LibraryDispatcher(LibraryManager library, ExecutorService sessions) {
+		this.library = library;
+		this.sessions = sessions;
+	}
+
+	/**
+	 * Starts a session
+	 *
+	 * @param session the work of the session
+	 * @return the future result of the session
+	 */
+	public <T> Future<T> dispatch(Session<T> session) {
+		return sessions.submit(() -> session.run(library));
+	}
+
+	/**
+	 * Stops accepting sessions and waits for the running ones to complete.
+	 * If interrupted while waiting, the running sessions are interrupted too and
+	 * still waited for; the interrupt status is set again before returning.
+	 */
+	@Override
+	public void close() {
+		boolean interrupted = false;
+		sessions.shutdown();
+		while (!sessions.isTerminated()) {
+			try {
+				// sessions may legitimately wait on clients for long
+				sessions.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				if (!interrupted) {
+					sessions.shutdownNow();
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return a virtual thread per task executor when the runtime has one,
+	 * a cached thread pool otherwise
+	 */
+	private static ExecutorService threadPerSession() {
+		try {
+			MethodHandle factory = MethodHandles.publicLookup().findStatic(
+				Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+			return (ExecutorService) factory.invokeExact();
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return Executors.newCachedThreadPool();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot create the session executor", e);
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package it.polito.library;
+
+import java.util.List;
+
+/**
+ * Change to a {@link LibraryManager}, published through {@link LibraryManager#events()}
+ */
+public abstract class LibraryEvent {
+
+	private final long sequence;
+
+	private LibraryEvent(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Number of the event among all the events of the library, counted from 0.
+	 * Numbers are consecutive and every subscriber receives its events in increasing order,
+	 * so a number more than one after the previous one tells the subscriber it missed
+	 * the events in between, dropped while its buffer was full.
+	 * 
+	 * @return the sequence number of the event
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public static final class BookAdded extends LibraryEvent {
+		private final String bookId;
+		private final String title;
+
+		BookAdded(long sequence, String bookId, String title) {
+			super(sequence);
+			this.bookId = bookId;
+			this.title = title;
+		}
+
+		public String getBookId() {
+			return bookId;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+	}
+
+	public static final class ReaderAdded extends LibraryEvent {
+		private final String readerId;
+		private final String name;
+
+		ReaderAdded(long sequence, String readerId, String name) {
+			super(sequence);
+			this.readerId = readerId;
+			this.name = name;
+		}
+
+		public String getReaderId() {
+			return readerId;
+		}
+
+		/**
+		 * @return the reader name in the format "Name Surname"
+		 */
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static final class RentalStarted extends LibraryEvent {
+		private final String bookId;
+		private final String readerId;
+		private final String startingDate;
+
+		RentalStarted(long sequence, String bookId, String readerId, String startingDate) {
+			super(sequence);
+			this.bookId = bookId;
+			this.readerId = readerId;
+			this.startingDate = startingDate;
+		}
+
+		public String getBookId() {
+			return bookId;
+		}
+
+		public String getReaderId() {
+			return readerId;
+		}
+
+		public String getStartingDate() {
+			return startingDate;
+		}
+	}
+
+	public static final class RentalEnded extends LibraryEvent {
+		private final String bookId;
+		private final String readerId;
+		private final String endingDate;
+
+		RentalEnded(long sequence, String bookId, String readerId, String endingDate) {
+			super(sequence);
+			this.bookId = bookId;
+			this.readerId = readerId;
+			this.endingDate = endingDate;
+		}
+
+		public String getBookId() {
+			return bookId;
+		}
+
+		public String getReaderId() {
+			return readerId;
+		}
+
+		public String getEndingDate() {
+			return endingDate;
+		}
+	}
+
+	public static final class BooksRemoved extends LibraryEvent {
+		private final List<String> bookIds;
+
+		BooksRemoved(long sequence, List<String> bookIds) {
+			super(sequence);
+			this.bookIds = bookIds;
+		}
+
+		/**
+		 * @return the read-only list of the IDs of the removed copies
+		 */
+		public List<String> getBookIds() {
+			return bookIds;
+		}
+	}
+
+}
@@ -1,58 +1,572 @@
 package it.polito.library;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
-import java.util.stream.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
 
 
 public class LibraryManager {
 
 	private static class Book {
-		String id;
-		String title;
-		boolean rented = false;
+		private static final VarHandle STATE = stateHandle(Book.class);
 
-		public Book(String id, String title) {
-			this.id = id;
+		final int number;
+		final String id;
+		final int title;
+		// catalog versions of the addition and of the removal of the copy
+		final long added;
+		volatile long removed = Long.MAX_VALUE;
+		// ADDING, FREE, CLAIMED, SWEPT, REMOVED or the row of the open rental in the rental log
+		volatile int state = ADDING;
+		// row of the latest rental in the rental log, written only while the copy is claimed
+		volatile int lastRental = RentalLog.NONE;
+		// odd while a rental of the copy is starting or ending
+		volatile int version = 0;
+		// result of getRentals, valid while the version does not change
+		volatile History history = null;
+
+		public Book(int number, int title, long added) {
+			this.number = number;
+			this.id = Integer.toString(number);
 			this.title = title;
+			this.added = added;
+		}
+
+		boolean claim(int expected) {
+			return STATE.compareAndSet(this, expected, CLAIMED);
+		}
+
+		boolean claimForSweep() {
+			return STATE.compareAndSet(this, FREE, SWEPT);
+		}
+	}
+
+	private static class History {
+		final int version;
+		final SortedMap<String, String> rentals;
+
+		public History(int version, SortedMap<String, String> rentals) {
+			this.version = version;
+			this.rentals = rentals;
+		}
+	}
+
+	private static class Title {
+		final int code;
+		final String name;
+		final AtomicInteger copies = new AtomicInteger();
+		// every copy ever added, lowest book ID first; removed ones stay for the snapshots
+		final NavigableSet<Book> catalogued = new ConcurrentSkipListSet<>(Comparator.comparingInt((Book book) -> book.number));
+		// copies not currently rented, lowest book ID first
+		final NavigableSet<Book> available = new ConcurrentSkipListSet<>(Comparator.comparingInt((Book book) -> book.number));
+		// total number of rentals of the copies of the title
+		final AtomicInteger rentals = new AtomicInteger();
+
+		public Title(int code, String name) {
+			this.code = code;
+			this.name = name;
 		}
 	}
 
 	private static class Person {
-		String id;
-		String firstName;
-		String lastName;
-		boolean rents = false;
+		private static final VarHandle STATE = stateHandle(Person.class);
+
+		final int number;
+		final String id;
+		// display name, built once when the reader is added
+		final String name;
+		// catalog version of the addition of the reader
+		final long added;
+		// ADDING, FREE, CLAIMED or the row of the open rental in the rental log
+		volatile int state = ADDING;
+		// entry in the ranking, written only while the reader is claimed
+		volatile Standing standing = null;
+
+		public Person(int number, String name, long added) {
+			this.number = number;
+			this.id = Integer.toString(number);
+			this.name = name;
+			this.added = added;
+		}
 
-		public Person(String id, String firstName, String lastName) {
-			this.id = id;
-			this.firstName = firstName;
-			this.lastName = lastName;
+		boolean claim(int expected) {
+			return STATE.compareAndSet(this, expected, CLAIMED);
 		}
 	}
 
-	private static class Rental {
-		String bookId;
-		String readerId;
-		LocalDate startingDate;
-		LocalDate endingDate = null;
+	/**
+	 * Number of rentals of a reader at some point in time.
+	 * Entries are immutable, so the concurrent ranking never sees a key change;
+	 * a reader gets a new entry on every rental.
+	 */
+	private static class Standing {
+		final Person reader;
+		final int rentals;
 
-		public Rental(String bookId, String readerId, LocalDate startingDate) {
-			this.bookId = bookId;
-			this.readerId = readerId;
-			this.startingDate = startingDate;
+		public Standing(Person reader, int rentals) {
+			this.reader = reader;
+			this.rentals = rentals;
 		}
 	}
 
-	private final static DateTimeFormatter LIB_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+	private final static int FIRST_ID = 1000;
+	private final static int CACHED_HISTORIES = 1024;
+	// waits on a step of another thread spin this many times before parking
+	private final static int SPINS = 100;
+	private final static long PARK_NANOS = 10_000;
+
+	// states of copies and readers other than the row of their open rental:
+	// a rental claims both copy and reader before changing anything, and releases them when done
+	private final static int FREE = -1;
+	private final static int CLAIMED = -2;
+	private final static int REMOVED = -3;
+	// held by removeBooks just long enough to remove a copy never rented, which rentals wait out
+	private final static int SWEPT = -4;
+	// held until a new copy or reader is fully added, which rentals wait out as well
+	private final static int ADDING = -5;
+
+	// rejections are common and carry no useful stack trace, so they share stackless instances
+	private final static LibException READER_NOT_PRESENT =
+		new LibException(LibException.Code.NOT_PRESENT, "Reader not present");
+	private final static LibException TITLE_NOT_PRESENT =
+		new LibException(LibException.Code.NOT_PRESENT, "Book not present");
+	private final static LibException COPY_NOT_PRESENT =
+		new LibException(LibException.Code.NOT_PRESENT, "No such book");
+	private final static LibException COPY_OR_READER_NOT_PRESENT =
+		new LibException(LibException.Code.NOT_PRESENT, "Either book or reader isn't present in the archive");
+	private final static LibException ALREADY_RENTED =
+		new LibException(LibException.Code.ALREADY_RENTED, "Either book is rented or reader already rents");
+	private final static LibException NOT_RENTED =
+		new LibException(LibException.Code.NOT_RENTED, "Book isn't rented by the reader");
+
+	private final AtomicInteger nextBookId;
+	private final AtomicInteger nextReaderId;
+	private final AtomicInteger nextTitleCode = new AtomicInteger();
+	// title dictionary: each distinct title gets a code on first sight and copies store only the code
+	private final Map<String, Title> books = new ConcurrentHashMap<>();
+	private final SlotArray<Title> titles = new SlotArray<>();
+	// number of copies of each title, kept sorted so getTitles never has to sort
+	private final SortedMap<String, Integer> titleCopies = new ConcurrentSkipListMap<>();
+	private final SortedMap<String, Integer> titlesView = Collections.unmodifiableSortedMap(titleCopies);
+	// copies and readers are indexed by their ID minus FIRST_ID; removed copies keep
+	// their slot in the REMOVED state, as snapshots taken before the removal still see them
+	private final SlotArray<Book> copies = new SlotArray<>();
+	private final SlotArray<Person> readers = new SlotArray<>();
+	// shared instances of the display names of the readers
+	private final Map<String, String> names = new ConcurrentHashMap<>();
+	// standings of the readers with at least one rental, most rentals first and then by ID;
+	// a reader may briefly have two entries while a rental is being recorded
+	private final NavigableSet<Standing> ranking = new ConcurrentSkipListSet<>(
+		Comparator.comparingInt((Standing standing) -> -standing.rentals)
+			.thenComparingInt((standing) -> standing.reader.number));
+	private final AtomicInteger copyCount = new AtomicInteger();
+	// title code -> number of copies, replaced on every change under the shared catalog lock,
+	// so snapshot reads the counts of its catalog version
+	private final AtomicReference<PersistentIntMap> titleCounts = new AtomicReference<>(PersistentIntMap.EMPTY);
+	private final RentalLog rentals = new RentalLog();
+	// slots of the copies that were already found rented or were removed, so removeBooks
+	// visits each surviving copy once; only removeBooks uses it, holding the sweep lock.
+	// Bits are counted from the first slot of this library, as the slots skipped by a
+	// restored sequence never hold a copy
+	private final BitSet rentedOrRemoved = new BitSet();
+	private final int firstSlot;
+	private final ReentrantLock sweep = new ReentrantLock();
+	// titles with at least one rental; removeBooks never drops their rented copies
+	private final Queue<Title> rentedTitles = new ConcurrentLinkedQueue<>();
+	// copies whose history is cached, oldest first, to bound the cache size;
+	// a copy cached again after a change may appear twice, which only evicts it early
+	private final Queue<Book> cachedHistories = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger cachedHistoryCount = new AtomicInteger();
+	// reader ID -> book ID of every open rental
+	private final Map<String, String> ongoing = new ConcurrentHashMap<>();
+	private final Set<String> booksView = new BookIds();
+	// offer() drops events for subscribers whose buffer is full, so publishing never blocks;
+	// events are offered before the copies and readers they describe are released
+	private final SubmissionPublisher<LibraryEvent> events = new SubmissionPublisher<>();
+	// events are numbered and offered under the lock, so every subscriber gets them in number order
+	private final ReentrantLock publishing = new ReentrantLock();
+	private long nextEvent = 0;
+	// every addition or removal of a copy or reader bumps the catalog version while sharing
+	// the catalog lock; snapshot takes the lock exclusively to read a version no change is behind
+	private final AtomicLong catalogVersion = new AtomicLong();
+	private final ReentrantReadWriteLock catalog = new ReentrantReadWriteLock();
+
+	/**
+	 * Read-only view of the IDs of the copies in the archive,
+	 * backed directly by the copies list.
+	 */
+	private class BookIds extends AbstractSet<String> {
+
+		@Override
+		public int size() {
+			return copyCount.get();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof String && copyOf((String) o) != null;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				private Book next = null;
+				private int slot = firstSlot;
+
+				@Override
+				public boolean hasNext() {
+					while (next == null && slot < copies.limit()) {
+						next = copies.get(slot++);
+						if (next != null && next.state == REMOVED) {
+							next = null;
+						}
+					}
+					return next != null;
+				}
+
+				@Override
+				public String next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					String id = next.id;
+					next = null;
+					return id;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Read-only view of the library at the time {@link LibraryManager#snapshot()} was called.
+	 * Nothing is copied when the snapshot is taken: copies, readers and rentals keep the
+	 * catalog version and rental log position of their changes, and the snapshot filters
+	 * the shared state by its own, while the catalog and the rental log hand over the
+	 * persistent maps of their counts and open rentals. Each query computes only its own
+	 * result, when first asked, and the results that do not depend on arguments are reused.
+	 */
+	public final class Snapshot {
+
+		/**
+		 * Read-only view of the IDs of the copies in the snapshot
+		 */
+		private final class BookIds extends AbstractSet<String> {
+
+			@Override
+			public int size() {
+				return copyCount;
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && Snapshot.this.contains(copies.get(slotOf((String) o)));
+			}
+
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private Book next = null;
+					private int slot = firstSlot;
+
+					@Override
+					public boolean hasNext() {
+						while (next == null && slot < copies.limit()) {
+							next = copies.get(slot++);
+							if (!Snapshot.this.contains(next)) {
+								next = null;
+							}
+						}
+						return next != null;
+					}
+
+					@Override
+					public String next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						String id = next.id;
+						next = null;
+						return id;
+					}
+				};
+			}
+		}
+
+		private final long version;
+		private final RentalLog.Cut cut;
+		// title code -> number of copies in the snapshot
+		private final PersistentIntMap titleCounts;
+		private final int copyCount;
+		private final Set<String> bookIds = new BookIds();
+		// concurrent first queries may both compute a result, with the same value
+		private volatile SortedMap<String, Integer> titlesResult = null;
+		private volatile Map<String, String> ongoingResult = null;
+		private volatile Map<String, Integer> rentalCountsResult = null;
+
+		private Snapshot(long version, RentalLog.Cut cut, PersistentIntMap titleCounts, int copyCount) {
+			this.version = version;
+			this.cut = cut;
+			this.titleCounts = titleCounts;
+			this.copyCount = copyCount;
+		}
+
+		private boolean contains(Book book) {
+			return book != null && book.added <= version && book.removed > version;
+		}
+
+		/**
+		 * @see LibraryManager#getTitles()
+		 */
+		public SortedMap<String, Integer> getTitles() {
+			SortedMap<String, Integer> result = titlesResult;
+			if (result == null) {
+				SortedMap<String, Integer> counts = new TreeMap<>();
+				titleCounts.forEach((code, count) -> counts.put(titles.get(code).name, count));
+				titlesResult = result = Collections.unmodifiableSortedMap(counts);
+			}
+			return result;
+		}
+
+		/**
+		 * The returned set is a read-only view, which scans the archive only when iterated.
+		 * 
+		 * @see LibraryManager#getBooks()
+		 */
+		public Set<String> getBooks() {
+			return bookIds;
+		}
+
+		/**
+		 * @see LibraryManager#getReaderName(String)
+		 */
+		public String getReaderName(String readerID) throws LibException {
+			Person reader = readerOf(readerID);
+			if (reader == null || reader.added > version) {
+				throw READER_NOT_PRESENT;
+			}
+
+			return reader.name;
+		}
+
+		/**
+		 * @see LibraryManager#getAvailableBook(String)
+		 */
+		public String getAvailableBook(String bookTitle) throws LibException {
+			Title title = books.get(bookTitle);
+			if (title == null || titleCounts.get(title.code, 0) == 0) {
+				throw TITLE_NOT_PRESENT;
+			}
+
+			// copies are visited by increasing ID, so the first one not rented wins
+			for (Book book : title.catalogued) {
+				if (contains(book) && !rentals.rentedAt(book.number - FIRST_ID, cut)) {
+					return book.id;
+				}
+			}
+			return "Not available";
+		}
+
+		/**
+		 * @see LibraryManager#getRentals(String)
+		 */
+		public SortedMap<String, String> getRentals(String bookID) throws LibException {
+			Book book = copies.get(slotOf(bookID));
+			if (!contains(book)) {
+				throw COPY_NOT_PRESENT;
+			}
+
+			return Collections.unmodifiableSortedMap(buildHistory(rentals.history(book.number - FIRST_ID, cut)));
+		}
 
-	private Integer nextBookId = 1000;
-	private Integer nextReaderId = 1000;
-	private Map<String, Collection<Book>> books = new HashMap<>();
-	private Map<String, Book> copies = new HashMap<>();
-	private Map<String, Person> readers = new HashMap<>();
-	private Map<String, Collection<Rental>> rentals = new HashMap<>();
+		/**
+		 * The returned map is read-only.
+		 * 
+		 * @see LibraryManager#getOngoingRentals()
+		 */
+		public Map<String, String> getOngoingRentals() {
+			Map<String, String> result = ongoingResult;
+			if (result == null) {
+				Map<String, String> ongoing = new HashMap<>();
+				cut.open.forEach((readerSlot, bookSlot) -> ongoing.put(readers.get(readerSlot).id, copies.get(bookSlot).id));
+				ongoingResult = result = Collections.unmodifiableMap(ongoing);
+			}
+			return result;
+		}
+
+		/**
+		 * @see LibraryManager#findBookWorm()
+		 */
+		public String findBookWorm() {
+			List<String> top = topReaders(1);
+			return top.isEmpty() ? null : top.get(0);
+		}
+
+		/**
+		 * @see LibraryManager#topReaders(int)
+		 */
+		public List<String> topReaders(int k) {
+			PersistentIntMap readerRentals = cut.readerRentals;
+			// most rentals first and then by ID, as slots follow the IDs
+			Comparator<Integer> ranking = Comparator.comparingInt((Integer slot) -> -readerRentals.get(slot, 0))
+				.thenComparingInt((slot) -> slot);
+
+			// the best k readers so far, the worst of them on top
+			PriorityQueue<Integer> best = new PriorityQueue<>(ranking.reversed());
+			readerRentals.forEach((readerSlot, count) -> {
+				best.add(readerSlot);
+				if (best.size() > k) {
+					best.poll();
+				}
+			});
+
+			String[] top = new String[best.size()];
+			for (int i = top.length - 1; i >= 0; i--) {
+				top[i] = readers.get(best.poll()).id;
+			}
+			return new ArrayList<>(Arrays.asList(top));
+		}
+
+		/**
+		 * @see LibraryManager#rentalCounts()
+		 */
+		public Map<String, Integer> rentalCounts() {
+			Map<String, Integer> result = rentalCountsResult;
+			if (result == null) {
+				Map<String, Integer> counts = new HashMap<>();
+				cut.titleRentals.forEach((code, count) -> counts.put(titles.get(code).name, count));
+				rentalCountsResult = result = Collections.unmodifiableMap(counts);
+			}
+			return result;
+		}
+	}
+
+	public LibraryManager() {
+		this(FIRST_ID, FIRST_ID);
+	}
+
+	/**
+	 * Creates a library whose ID sequences continue those of a previously persisted library
+	 * 
+	 * IDs go from 1000 up to, but excluding, {@link Integer#MAX_VALUE}.
+	 * 
+	 * @param nextBookId the ID to be assigned to the next book copy
+	 * @param nextReaderId the ID to be assigned to the next reader
+	 * @throws IllegalArgumentException if either ID is lower than 1000
+	 */
+	public LibraryManager(int nextBookId, int nextReaderId) {
+		if (nextBookId < FIRST_ID || nextReaderId < FIRST_ID) {
+			throw new IllegalArgumentException("IDs start from " + FIRST_ID);
+		}
+
+		this.nextBookId = new AtomicInteger(nextBookId);
+		this.nextReaderId = new AtomicInteger(nextReaderId);
+		this.firstSlot = nextBookId - FIRST_ID;
+	}
+
+	private static VarHandle stateHandle(Class<?> owner) {
+		try {
+			return MethodHandles.lookup().findVarHandle(owner, "state", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Converts a book or reader ID into its slot in the storage arrays.
+	 * IDs are plain decimal numbers, so anything else cannot be in the archive.
+	 * 
+	 * @param id the ID received through the public API
+	 * @return the slot of the ID, or -1 if the ID is malformed
+	 */
+	private static int slotOf(String id) {
+		if (id == null || id.isEmpty() || id.length() > 10 || id.charAt(0) == '0') {
+			return -1;
+		}
+
+		long number = 0;
+		for (int i = 0; i < id.length(); i++) {
+			char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			number = number * 10 + (c - '0');
+		}
+
+		return number >= FIRST_ID && number < Integer.MAX_VALUE ? (int) number - FIRST_ID : -1;
+	}
+
+	/**
+	 * Takes a range of consecutive IDs from a sequence
+	 * 
+	 * @param next the sequence
+	 * @param count the number of IDs to take
+	 * @return the first ID of the range
+	 * @throws IllegalStateException if the IDs would reach {@link Integer#MAX_VALUE}
+	 */
+	private static int reserve(AtomicInteger next, int count) {
+		return next.getAndAccumulate(count, (first, taken) -> {
+			if (first > Integer.MAX_VALUE - taken) {
+				throw new IllegalStateException("No IDs left");
+			}
+			return first + taken;
+		});
+	}
+
+	/**
+	 * Waits for another thread to finish a short step, such as a rental being recorded.
+	 * The first attempts spin; later ones park, as the other thread may itself be parked
+	 * on a lock, and a spinning virtual thread would keep it from getting a carrier back.
+	 * 
+	 * @param attempt the number of attempts already made
+	 */
+	private static void backOff(int attempt) {
+		if (attempt < SPINS) {
+			Thread.onSpinWait();
+		} else {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Changes the number of copies of a title in the counts read by snapshots
+	 * 
+	 * @param title the code of the title
+	 * @param delta the number of copies added, or removed if negative
+	 */
+	private void countCopies(int title, int delta) {
+		titleCounts.updateAndGet((counts) -> {
+			int count = counts.get(title, 0) + delta;
+			return count == 0 ? counts.remove(title) : counts.put(title, count);
+		});
+	}
+
+	private static LibException rejection(LibStatus status) {
+		switch (status) {
+			case NOT_PRESENT:
+				return COPY_OR_READER_NOT_PRESENT;
+			case ALREADY_RENTED:
+				return ALREADY_RENTED;
+			default:
+				return NOT_RENTED;
+		}
+	}
+
+	private Book copyOf(String bookID) {
+		Book book = copies.get(slotOf(bookID));
+		return book == null || book.state == REMOVED ? null : book;
+	}
+
+	private Person readerOf(String readerID) {
+		return readers.get(slotOf(readerID));
+	}
 	    
     // R1: Readers and Books 
     
@@ -66,47 +580,73 @@ public class LibraryManager {
 	 * @return the ID of the book added 
 	 */
     public String addBook(String title) {
-		books.computeIfAbsent(title, (key) -> new ArrayList<>());
+		return addBook(reserve(nextBookId, 1), title).id;
+    }
 
-		String id = nextBookId.toString();
-		nextBookId++;
+	private Book addBook(int number, String title) {
+		Title entry = books.get(title);
+		if (entry == null) {
+			// created outside the map, as storing the code may wait on a lock, which must
+			// not happen under the map's bin monitor: it would pin a virtual thread
+			Title created = new Title(nextTitleCode.getAndIncrement(), title);
+			titles.set(created.code, created);
+			entry = books.putIfAbsent(title, created);
+			if (entry == null) {
+				entry = created;
+			} else {
+				// another thread added the title first; the code is left unused
+				titles.set(created.code, null);
+			}
+		}
 
-		Book book = new Book(id, title);
-		books.get(title).add(book);
-		copies.put(id, book);
-		rentals.put(id, new ArrayList<>());
+		Book book;
+		catalog.readLock().lock();
+		try {
+			book = new Book(number, entry.code, catalogVersion.incrementAndGet());
 
-		return id;
-    }
+			// the copy starts in ADDING, so rentals and removeBooks only see it fully added
+			copies.set(number - FIRST_ID, book);
+			copyCount.incrementAndGet();
+			entry.copies.incrementAndGet();
+			titleCopies.merge(entry.name, 1, Integer::sum);
+			countCopies(entry.code, 1);
+			entry.catalogued.add(book);
+			entry.available.add(book);
+		} finally {
+			catalog.readLock().unlock();
+		}
+
+		// published before the copy is released, so it precedes any event about the copy
+		String name = entry.name;
+		try {
+			publish((sequence) -> new LibraryEvent.BookAdded(sequence, book.id, name));
+		} finally {
+			book.state = FREE;
+		}
+		return book;
+	}
     
     /**
 	 * Returns the book titles available in the library
 	 * sorted alphabetically, each one linked to the
 	 * number of copies available for that title.
 	 * 
+	 * The returned map is a read-only view that reflects later changes to the archive.
+	 * 
 	 * @return a map of the titles liked to the number of available copies
 	 */
     public SortedMap<String, Integer> getTitles() {
-    	return books.entrySet().stream()
-			.sorted(Comparator.comparing(Map.Entry::getKey))
-			.collect(Collectors.toMap(
-				Map.Entry::getKey,
-				(entry) -> entry.getValue().size(),
-				(v, w) -> v,
-				TreeMap::new
-			));
+    	return titlesView;
     }
     
     /**
 	 * Returns the books available in the library
+	 * The returned set is a read-only view that reflects later changes to the archive.
 	 * 
 	 * @return a set of the titles liked to the number of available copies
 	 */
     public Set<String> getBooks() {
-        return books.values().stream()
-			.flatMap(Collection::stream)
-			.map((book) -> book.id)
-			.collect(Collectors.toSet());
+        return booksView;
     }
     
     /**
@@ -116,10 +656,24 @@ public class LibraryManager {
 	 * @param surname last name of the reader
 	 */
     public void addReader(String name, String surname) {
-		String id = nextReaderId.toString();
-		nextReaderId++;
+		String fullName = names.computeIfAbsent(name + " " + surname, (key) -> key);
 
-		readers.put(id, new Person(id, name, surname));
+		int number = reserve(nextReaderId, 1);
+		Person reader;
+		catalog.readLock().lock();
+		try {
+			// the reader starts in ADDING, so rentals only see it once announced
+			reader = new Person(number, fullName, catalogVersion.incrementAndGet());
+			readers.set(number - FIRST_ID, reader);
+		} finally {
+			catalog.readLock().unlock();
+		}
+
+		try {
+			publish((sequence) -> new LibraryEvent.ReaderAdded(sequence, reader.id, reader.name));
+		} finally {
+			reader.state = FREE;
+		}
     }
     
     
@@ -131,12 +685,12 @@ public class LibraryManager {
 	 * @throws LibException if the readerID is not present in the archive
 	 */
     public String getReaderName(String readerID) throws LibException {
-        Person reader = readers.get(readerID);
+        Person reader = readerOf(readerID);
 		if (reader == null) {
-			throw new LibException("Reader not present");
+			throw READER_NOT_PRESENT;
 		}
 
-		return String.format("%s %s", reader.firstName, reader.lastName);
+		return reader.name;
     }    
     
     
@@ -151,16 +705,32 @@ public class LibraryManager {
 	 * @throws LibException  an exception if the book is not present in the archive
 	 */
     public String getAvailableBook(String bookTitle) throws LibException {
-		Collection<Book> book = books.get(bookTitle);
-		if (book == null) {
-			throw new LibException("Book not present");
+		String id = tryGetAvailableBook(bookTitle);
+		if (id == null) {
+			throw TITLE_NOT_PRESENT;
 		}
-		
-		return book.stream()
-			.filter((copy) -> !copy.rented)
-			.map((copy) -> copy.id)
-			.findAny()
-			.orElse("Not available");
+
+		return id;
+    }
+
+    /**
+	 * Retrieves the bookID of a copy of a book if available, without throwing
+	 * 
+	 * @param bookTitle the title of the book
+	 * @return the unique book ID of a copy of the book, the message "Not available",
+	 * or null if the book is not present in the archive
+	 */
+    public String tryGetAvailableBook(String bookTitle) {
+		Title title = books.get(bookTitle);
+		if (title == null || title.copies.get() == 0) {
+			return null;
+		}
+
+		// copies may be rented concurrently, so the set is not checked for emptiness first
+		Iterator<Book> available = title.available.iterator();
+		return available.hasNext()
+			? available.next().id
+			: "Not available";
     }
 	
     /**
@@ -171,22 +741,88 @@ public class LibraryManager {
 	 * @param startingDate the starting date of the rental
 	 * @throws LibException  an exception if the book copy or the reader are not present in the archive,
 	 * if the reader is already renting a book, or if the book copy is already rented
+	 * @throws java.time.format.DateTimeParseException if the starting date is not a valid "dd-MM-yyyy" date
 	 */
 	public void startRental(String bookID, String readerID, String startingDate) throws LibException {
-		Book book = copies.get(bookID);
-		Person reader = readers.get(readerID);
+		LibStatus status = tryStartRental(bookID, readerID, startingDate);
+		if (status == LibStatus.INVALID_DATE) {
+			// parsed again only to throw the parser's own exception
+			LibDates.parse(startingDate);
+		}
+		if (status != LibStatus.OK) {
+			throw rejection(status);
+		}
+    }
+
+    /**
+	 * Starts a rental of a specific book copy for a specific reader, without throwing
+	 * 
+	 * @param bookID the unique book ID of the book copy
+	 * @param readerID the unique reader ID of the reader
+	 * @param startingDate the starting date of the rental
+	 * @return {@link LibStatus#NOT_PRESENT} if the book copy or the reader are not present in the archive,
+	 * {@link LibStatus#INVALID_DATE} if the starting date is not a valid "dd-MM-yyyy" date,
+	 * {@link LibStatus#ALREADY_RENTED} if the reader is already renting a book or the book copy is already rented,
+	 * {@link LibStatus#OK} otherwise
+	 */
+	public LibStatus tryStartRental(String bookID, String readerID, String startingDate) {
+		Book book = copyOf(bookID);
+		Person reader = readerOf(readerID);
 		
 		if (book == null || reader == null) {
-			throw new LibException("Either book or reader isn't present in the archive");
+			return LibStatus.NOT_PRESENT;
+		}
+
+		int startDay = LibDates.tryParse(startingDate);
+		if (startDay == LibDates.INVALID) {
+			return LibStatus.INVALID_DATE;
+		}
+
+		for (int attempt = 0; !reader.claim(FREE); ) {
+			if (reader.state != ADDING) {
+				return LibStatus.ALREADY_RENTED;
+			}
+			backOff(attempt++);
+		}
+		for (int attempt = 0; !book.claim(FREE); ) {
+			int state = book.state;
+			if (state != SWEPT && state != ADDING) {
+				reader.state = FREE;
+				// removeBooks may have dropped the copy after it was looked up
+				return state == REMOVED ? LibStatus.NOT_PRESENT : LibStatus.ALREADY_RENTED;
+			}
+			backOff(attempt++);
 		}
 
-		if (reader.rents || book.rented) {
-			throw new LibException("Either book is rented or reader already rents");
+		book.version++;
+		int row = rentals.append(book.number - FIRST_ID, reader.number - FIRST_ID, book.title, startDay, book.lastRental);
+		book.lastRental = row;
+		ongoing.put(reader.id, book.id);
+
+		Title title = titles.get(book.title);
+		title.available.remove(book);
+		if (title.rentals.getAndIncrement() == 0) {
+			rentedTitles.add(title);
+		}
+
+		// the new standing is added before the old one goes, so the reader is never missing
+		Standing previous = reader.standing;
+		reader.standing = new Standing(reader, previous == null ? 1 : previous.rentals + 1);
+		ranking.add(reader.standing);
+		if (previous != null) {
+			ranking.remove(previous);
 		}
 
-		rentals.get(bookID).add(new Rental(bookID, readerID, LocalDate.parse(startingDate, LIB_FORMATTER)));
-		book.rented = true;
-		reader.rents = true;
+		book.version++;
+
+		// published while both are still claimed, so the end of the rental cannot overtake it
+		try {
+			publish((sequence) -> new LibraryEvent.RentalStarted(sequence, book.id, reader.id, startingDate));
+		} finally {
+			book.state = row;
+			reader.state = row;
+		}
+		return LibStatus.OK;
     }
     
 	/**
@@ -197,18 +833,63 @@ public class LibraryManager {
 	 * @param endingDate the ending date of the rental
 	 * @throws LibException  an exception if the book copy or the reader are not present in the archive,
 	 * if the reader is not renting a book, or if the book copy is not rented
+	 * @throws java.time.format.DateTimeParseException if the ending date is not a valid "dd-MM-yyyy" date
 	 */
     public void endRental(String bookID, String readerID, String endingDate) throws LibException {
-		Book book = copies.get(bookID);
-		Person reader = readers.get(readerID);
-
-		Rental rental = rentals.get(bookID).stream()
-			.filter((r) -> r.endingDate == null)
-			.findAny()
-			.get();
-		rental.endingDate = LocalDate.parse(endingDate, LIB_FORMATTER);
-		book.rented = false;
-		reader.rents = false;
+		LibStatus status = tryEndRental(bookID, readerID, endingDate);
+		if (status == LibStatus.INVALID_DATE) {
+			// parsed again only to throw the parser's own exception
+			LibDates.parse(endingDate);
+		}
+		if (status != LibStatus.OK) {
+			throw rejection(status);
+		}
+    }
+
+	/**
+	 * Ends a rental of a specific book copy for a specific reader, without throwing
+	 * 
+	 * @param bookID the unique book ID of the book copy
+	 * @param readerID the unique reader ID of the reader
+	 * @param endingDate the ending date of the rental
+	 * @return {@link LibStatus#NOT_PRESENT} if the book copy or the reader are not present in the archive,
+	 * {@link LibStatus#INVALID_DATE} if the ending date is not a valid "dd-MM-yyyy" date,
+	 * {@link LibStatus#NOT_RENTED} if the book copy is not rented by the reader,
+	 * {@link LibStatus#OK} otherwise
+	 */
+    public LibStatus tryEndRental(String bookID, String readerID, String endingDate) {
+		Book book = copyOf(bookID);
+		Person reader = readerOf(readerID);
+
+		if (book == null || reader == null) {
+			return LibStatus.NOT_PRESENT;
+		}
+
+		int endDay = LibDates.tryParse(endingDate);
+		if (endDay == LibDates.INVALID) {
+			return LibStatus.INVALID_DATE;
+		}
+
+		// only the rental owning the row can release the reader, so claiming the copy is enough
+		int row = book.state;
+		if (row < 0 || reader.state != row || !book.claim(row)) {
+			return LibStatus.NOT_RENTED;
+		}
+
+		book.version++;
+		rentals.close(row, endDay);
+		ongoing.remove(reader.id);
+		titles.get(book.title).available.add(book);
+		book.version++;
+
+		// published while the copy is still claimed, so the next rental of the copy cannot overtake it
+		try {
+			publish((sequence) -> new LibraryEvent.RentalEnded(sequence, book.id, reader.id, endingDate));
+		} finally {
+			reader.state = FREE;
+			book.state = FREE;
+		}
+		return LibStatus.OK;
     }
     
     
@@ -216,30 +897,85 @@ public class LibraryManager {
 	* Retrieves the list of readers that rented a specific book.
 	* It takes a unique book ID as input, and returns the readers' reader IDs and the starting and ending dates of each rental
 	* 
+	* The returned map is read-only.
+	* 
 	* @param bookID the unique book ID of the book copy
 	* @return the map linking reader IDs with rentals starting and ending dates
 	* @throws LibException  an exception if the book copy or the reader are not present in the archive,
 	* if the reader is not renting a book, or if the book copy is not rented
 	*/
     public SortedMap<String, String> getRentals(String bookID) throws LibException {
-		SortedMap<String,String> rentalInfo = new TreeMap<>();
-		Collection<Rental> bookRentals = rentals.get(bookID);
+		Book book = copyOf(bookID);
 
-		if (bookRentals == null) {
-			throw new LibException("No such book");
+		if (book == null) {
+			throw COPY_NOT_PRESENT;
 		}
 
-		for (Rental rental : bookRentals) {
-			String startingDate = rental.startingDate.format(LIB_FORMATTER);
-			String endingDate = rental.endingDate != null
-				? rental.endingDate.format(LIB_FORMATTER)
-				: "ONGOING";
-			
-			rentalInfo.put(rental.readerId, String.format("%s %s", startingDate, endingDate));
+		History history = book.history;
+		if (history != null && history.version == book.version) {
+			return history.rentals;
 		}
 
-		return rentalInfo;
+		// rebuilds until no rental of the copy started or ended meanwhile
+		int version;
+		SortedMap<String, String> rentalInfo;
+		for (int attempt = 0; ; attempt++) {
+			version = book.version;
+			if ((version & 1) != 0) {
+				backOff(attempt);
+				continue;
+			}
+
+			rentalInfo = buildHistory(book);
+			if (version == book.version) {
+				break;
+			}
+		}
+
+		history = new History(version, Collections.unmodifiableSortedMap(rentalInfo));
+		book.history = history;
+
+		cachedHistories.add(book);
+		if (cachedHistoryCount.incrementAndGet() > CACHED_HISTORIES) {
+			Book evicted = cachedHistories.poll();
+			cachedHistoryCount.decrementAndGet();
+			if (evicted != null) {
+				evicted.history = null;
+			}
+		}
+
+		return history.rentals;
     }
+
+	private SortedMap<String, String> buildHistory(Book book) {
+		return buildHistory(rentals.history(book.lastRental));
+	}
+
+	private SortedMap<String, String> buildHistory(int[] history) {
+		SortedMap<String,String> rentalInfo = new TreeMap<>();
+		StringBuilder dates = new StringBuilder(21);
+
+		// the history comes newest first, so a later rental by the same reader wins
+		for (int i = 0; i < history.length; i += RentalLog.HISTORY_FIELDS) {
+			String readerId = readers.get(history[i]).id;
+			if (rentalInfo.containsKey(readerId)) {
+				continue;
+			}
+
+			dates.setLength(0);
+			LibDates.format(history[i + 1], dates);
+			dates.append(' ');
+			if (history[i + 2] != RentalLog.ONGOING) {
+				LibDates.format(history[i + 2], dates);
+			} else {
+				dates.append("ONGOING");
+			}
+
+			rentalInfo.put(readerId, dates.toString());
+		}
+
+		return rentalInfo;
+	}
     
     
     // R3: Book Donations
@@ -250,6 +986,20 @@ public class LibraryManager {
 	* @param donatedTitles It takes in input book titles in the format "First title,Second title"
 	*/
     public void receiveDonation(String donatedTitles) {
+		String[] donated = Arrays.stream(donatedTitles.split(","))
+			.filter((title) -> !title.isEmpty())
+			.toArray(String[]::new);
+
+		// the donation gets a contiguous range of IDs, and snapshots see all of it or none
+		int first = reserve(nextBookId, donated.length);
+		catalog.readLock().lock();
+		try {
+			for (int i = 0; i < donated.length; i++) {
+				addBook(first + i, donated[i]);
+			}
+		} finally {
+			catalog.readLock().unlock();
+		}
     }
     
     // R4: Archive Management
@@ -261,7 +1011,7 @@ public class LibraryManager {
 
 	*/
     public Map<String, String> getOngoingRentals() {
-        return null;
+        return new HashMap<>(ongoing);
     }
     
     /**
@@ -269,6 +1019,62 @@ public class LibraryManager {
 	* 
 	*/
     public void removeBooks() {
+		Map<Title, Integer> removed = new HashMap<>();
+		List<String> removedIds = new ArrayList<>();
+
+		sweep.lock();
+		catalog.readLock().lock();
+		try {
+			for (int slot = firstSlot + rentedOrRemoved.nextClearBit(0); slot < copies.limit();
+					slot = firstSlot + rentedOrRemoved.nextClearBit(slot - firstSlot + 1)) {
+				Book book = copies.get(slot);
+				if (book == null) {
+					// ID reserved but not stored yet
+					continue;
+				}
+
+				// a copy rented once is never removed, and its latest rental never goes back to NONE
+				if (book.lastRental != RentalLog.NONE) {
+					rentedOrRemoved.set(slot - firstSlot);
+					continue;
+				}
+				if (!book.claimForSweep()) {
+					// being added or rented: the next sweep settles it
+					continue;
+				}
+
+				if (book.lastRental == RentalLog.NONE) {
+					Title title = titles.get(book.title);
+					title.available.remove(book);
+					removed.merge(title, 1, Integer::sum);
+					removedIds.add(book.id);
+					book.history = null;
+					copyCount.decrementAndGet();
+					countCopies(book.title, -1);
+					book.removed = catalogVersion.incrementAndGet();
+					book.state = REMOVED;
+				} else {
+					// rented and returned since it was checked
+					book.state = FREE;
+				}
+				rentedOrRemoved.set(slot - firstSlot);
+			}
+		} finally {
+			catalog.readLock().unlock();
+			sweep.unlock();
+		}
+
+		for (Map.Entry<Title, Integer> entry : removed.entrySet()) {
+			Title title = entry.getKey();
+			int count = entry.getValue();
+			title.copies.addAndGet(-count);
+			// the title keeps its code, so it is simply left without copies
+			titleCopies.computeIfPresent(title.name, (name, left) -> left == count ? null : left - count);
+		}
+
+		if (!removedIds.isEmpty()) {
+			publish((sequence) -> new LibraryEvent.BooksRemoved(sequence, Collections.unmodifiableList(removedIds)));
+		}
     }
     	
     // R5: Stats
@@ -276,11 +1082,35 @@ public class LibraryManager {
     /**
 	* Finds the reader with the highest number of rentals
 	* and returns their unique ID.
+	* On ties, the reader with the lowest ID is returned.
 	* 
 	* @return the uniqueID of the reader with the highest number of rentals
 	*/
     public String findBookWorm() {
-        return null;
+		Iterator<Standing> standings = ranking.iterator();
+        return standings.hasNext() ? standings.next().reader.id : null;
+    }
+
+    /**
+	* Returns the readers with the highest number of rentals,
+	* ties being broken by the lowest reader ID.
+	* 
+	* @param k the maximum number of readers to return
+	* @return the unique IDs of at most k readers, most rentals first
+	*/
+    public List<String> topReaders(int k) {
+		List<String> top = new ArrayList<>(k);
+		for (Standing standing : ranking) {
+			if (top.size() == k) {
+				break;
+			}
+			// skips the entry left behind by a rental being recorded
+			if (standing.reader.standing == standing) {
+				top.add(standing.reader.id);
+			}
+		}
+
+		return top;
     }
     
     /**
@@ -289,7 +1119,71 @@ public class LibraryManager {
 	* @return the map linking a title with the number of rentals
 	*/
     public Map<String,Integer> rentalCounts() {
-        return null;
+		Map<String, Integer> counts = new HashMap<>();
+		for (Title title : rentedTitles) {
+			counts.put(title.name, title.rentals.get());
+		}
+
+        return Collections.unmodifiableMap(counts);
+    }
+
+    // Events
+
+    /**
+	* Returns the publisher of the changes to the library.
+	* Events are published after the change they describe is applied, and the events
+	* about the same copy or reader are published in the order of the changes;
+	* changes to unrelated copies and readers may be published in either order.
+	* Each subscriber has a bounded buffer: when a subscriber falls behind
+	* and its buffer is full, the event is dropped for that subscriber
+	* rather than slowing down the library. Events are numbered, so the subscriber
+	* can tell the gap from {@link LibraryEvent#getSequence()} and keeps receiving
+	* the later events.
+	* 
+	* @return the publisher of the library events
+	*/
+    public Flow.Publisher<LibraryEvent> events() {
+		return events::subscribe;
+    }
+
+	/**
+	 * Publishes an event to the current subscribers, if any.
+	 * Runs no subscriber code: offer only hands the event to the subscribers' buffers.
+	 * 
+	 * @param event builds the event from its sequence number
+	 */
+	private void publish(LongFunction<LibraryEvent> event) {
+		if (!events.hasSubscribers()) {
+			return;
+		}
+
+		publishing.lock();
+		try {
+			events.offer(event.apply(nextEvent++), null);
+		} catch (RejectedExecutionException e) {
+			// no thread to deliver the event: it is lost like one dropped for a full buffer
+		} finally {
+			publishing.unlock();
+		}
+	}
+
+    // Snapshots
+
+    /**
+	* Takes a consistent, read-only view of the library as it is now.
+	* Taking it only waits for the additions and removals of copies and readers
+	* in progress; reading it never blocks the library, and the changes made
+	* after it was taken are not visible through it.
+	* 
+	* @return the snapshot of the library
+	*/
+    public Snapshot snapshot() {
+		catalog.writeLock().lock();
+		try {
+			return new Snapshot(catalogVersion.get(), rentals.cut(), titleCounts.get(), copyCount.get());
+		} finally {
+			catalog.writeLock().unlock();
+		}
     }
 
 }
@@ -0,0 +1,142 @@
+package it.polito.library;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Asynchronous facade of a {@link LibraryManager}.
+ * Every operation runs on the given executor and returns a future, completed
+ * exceptionally with the {@link LibException} when the operation is rejected,
+ * and with whatever else the operation or the executor throws.
+ */
+public class LibraryManagerAsync {
+
+	private interface Call<T> {
+		T apply(LibraryManager library) throws LibException;
+	}
+
+	private final LibraryManager library;
+	private final Executor executor;
+
+	public LibraryManagerAsync(LibraryManager library) {
+		this(library, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param library the library the operations are applied to
+	 * @param executor the executor running the operations
+	 */
+	public LibraryManagerAsync(LibraryManager library, Executor executor) {
+		this.library = library;
+		this.executor = executor;
+	}
+
+	// R1: Readers and Books
+
+	public CompletableFuture<String> addBookAsync(String title) {
+		return call((library) -> library.addBook(title));
+	}
+
+	public CompletableFuture<SortedMap<String, Integer>> getTitlesAsync() {
+		return call(LibraryManager::getTitles);
+	}
+
+	public CompletableFuture<Set<String>> getBooksAsync() {
+		return call(LibraryManager::getBooks);
+	}
+
+	public CompletableFuture<Void> addReaderAsync(String name, String surname) {
+		return call((library) -> {
+			library.addReader(name, surname);
+			return null;
+		});
+	}
+
+	public CompletableFuture<String> getReaderNameAsync(String readerID) {
+		return call((library) -> library.getReaderName(readerID));
+	}
+
+	// R2: Rentals Management
+
+	public CompletableFuture<String> getAvailableBookAsync(String bookTitle) {
+		return call((library) -> library.getAvailableBook(bookTitle));
+	}
+
+	public CompletableFuture<Void> startRentalAsync(String bookID, String readerID, String startingDate) {
+		return call((library) -> {
+			library.startRental(bookID, readerID, startingDate);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> endRentalAsync(String bookID, String readerID, String endingDate) {
+		return call((library) -> {
+			library.endRental(bookID, readerID, endingDate);
+			return null;
+		});
+	}
+
+	public CompletableFuture<SortedMap<String, String>> getRentalsAsync(String bookID) {
+		return call((library) -> library.getRentals(bookID));
+	}
+
+	// R3: Book Donations
+
+	public CompletableFuture<Void> receiveDonationAsync(String donatedTitles) {
+		return call((library) -> {
+			library.receiveDonation(donatedTitles);
+			return null;
+		});
+	}
+
+	// R4: Archive Management
+
+	public CompletableFuture<Map<String, String>> getOngoingRentalsAsync() {
+		return call(LibraryManager::getOngoingRentals);
+	}
+
+	public CompletableFuture<Void> removeBooksAsync() {
+		return call((library) -> {
+			library.removeBooks();
+			return null;
+		});
+	}
+
+	// R5: Stats
+
+	public CompletableFuture<String> findBookWormAsync() {
+		return call(LibraryManager::findBookWorm);
+	}
+
+	public CompletableFuture<List<String>> topReadersAsync(int k) {
+		return call((library) -> library.topReaders(k));
+	}
+
+	public CompletableFuture<Map<String, Integer>> rentalCountsAsync() {
+		return call(LibraryManager::rentalCounts);
+	}
+
+	private <T> CompletableFuture<T> call(Call<T> call) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					result.complete(call.apply(library));
+				} catch (Throwable e) {
+					// an Error too, or the future would never complete
+					result.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			// the executor rejected the operation
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,194 @@
+package it.polito.library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Applies the mutating operations of a {@link LibraryManager} on a single writer thread.
+ * Any thread can submit operations; they are queued in a bounded buffer and applied
+ * in submission order, in batches of consecutive commands.
+ * Each submission returns a future completed by the writer thread, exceptionally with
+ * a {@link LibException} when the operation is rejected; dependent actions that may
+ * take long should use the asynchronous variants of the future methods, so they do
+ * not hold up the writer.
+ * The writer is a daemon thread, so it does not keep the JVM alive: commands still
+ * queued when the JVM exits are lost unless the pipeline was closed first.
+ */
+public class LibraryPipeline implements AutoCloseable {
+
+	private interface Operation<T> {
+		T apply(LibraryManager library) throws LibException;
+	}
+
+	private static class Command<T> {
+		final Operation<T> operation;
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		Command(Operation<T> operation) {
+			this.operation = operation;
+		}
+
+		void run(LibraryManager library) {
+			try {
+				result.complete(operation.apply(library));
+			} catch (Throwable e) {
+				// even an Error fails only its own command, so the writer keeps serving the queue
+				result.completeExceptionally(e);
+			}
+		}
+	}
+
+	// queued after the last command to stop the writer
+	private static final Command<Void> SHUTDOWN = new Command<>((library) -> null);
+
+	private final LibraryManager library;
+	private final BlockingQueue<Command<?>> commands;
+	private final int batchSize;
+	private final Thread writer;
+	// submitters share it while queueing, close takes it exclusively, so nothing is queued after SHUTDOWN
+	private final ReadWriteLock closing = new ReentrantReadWriteLock();
+	private boolean closed = false;
+
+	public LibraryPipeline(LibraryManager library) {
+		this(library, 1024, 64);
+	}
+
+	/**
+	 * @param library the library the operations are applied to
+	 * @param capacity the maximum number of queued commands; submitters wait when it is reached
+	 * @param batchSize the maximum number of commands the writer takes from the queue at once
+	 */
+	public LibraryPipeline(LibraryManager library, int capacity, int batchSize) {
+		this.library = library;
+		this.commands = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.writer = new Thread(this::write, "library-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public CompletableFuture<String> addBook(String title) {
+		return submit((library) -> library.addBook(title));
+	}
+
+	public CompletableFuture<Void> addReader(String name, String surname) {
+		return submit((library) -> {
+			library.addReader(name, surname);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> startRental(String bookID, String readerID, String startingDate) {
+		return submit((library) -> {
+			library.startRental(bookID, readerID, startingDate);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> endRental(String bookID, String readerID, String endingDate) {
+		return submit((library) -> {
+			library.endRental(bookID, readerID, endingDate);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> receiveDonation(String donatedTitles) {
+		return submit((library) -> {
+			library.receiveDonation(donatedTitles);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> removeBooks() {
+		return submit((library) -> {
+			library.removeBooks();
+			return null;
+		});
+	}
+
+	/**
+	 * Stops accepting commands, waits for the queued ones to be applied
+	 * and then stops the writer thread.
+	 * An interrupt does not cut the wait short, as the queued commands are
+	 * applied anyway; the interrupt status is set again before returning.
+	 */
+	@Override
+	public void close() {
+		boolean interrupted = false;
+
+		closing.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			while (true) {
+				try {
+					commands.put(SHUTDOWN);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			closing.writeLock().unlock();
+		}
+
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private <T> CompletableFuture<T> submit(Operation<T> operation) {
+		Command<T> command = new Command<>(operation);
+
+		closing.readLock().lock();
+		try {
+			if (closed) {
+				throw new RejectedExecutionException("Pipeline closed");
+			}
+			commands.put(command);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			command.result.completeExceptionally(e);
+		} finally {
+			closing.readLock().unlock();
+		}
+		return command.result;
+	}
+
+	private void write() {
+		List<Command<?>> batch = new ArrayList<>(batchSize);
+		while (true) {
+			try {
+				batch.add(commands.take());
+			} catch (InterruptedException e) {
+				// only close stops the writer, so the pending commands are never lost
+				continue;
+			}
+			commands.drainTo(batch, batchSize - 1);
+
+			for (Command<?> command : batch) {
+				if (command == SHUTDOWN) {
+					return;
+				}
+				command.run(library);
+			}
+			batch.clear();
+		}
+	}
+
+}
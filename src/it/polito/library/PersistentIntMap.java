@@ -0,0 +1,258 @@
+package it.polito.library;
+
+/**
+ * Immutable map from int keys to int values, stored as a hash array mapped trie.
+ * Every change returns a new map sharing all the untouched nodes with the old one,
+ * so a change copies at most one node per level and any version can be kept and
+ * read concurrently at no cost.
+ * The trie takes 5 bits of the key per level, lowest first: keys are distinct ints,
+ * so they never collide and dense keys such as slots spread evenly from the root.
+ */
+final class PersistentIntMap {
+
+	interface EntryVisitor {
+		void visit(int key, int value);
+	}
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * Node of the trie: a bitmap tells which of the 32 branches hold an entry,
+	 * another which hold a child node, and the arrays store only those branches.
+	 */
+	private static final class Node {
+		static final Node EMPTY = new Node(0, 0, new int[0], new int[0], new Node[0]);
+
+		final int dataMap;
+		final int nodeMap;
+		final int[] keys;
+		final int[] values;
+		final Node[] nodes;
+
+		Node(int dataMap, int nodeMap, int[] keys, int[] values, Node[] nodes) {
+			this.dataMap = dataMap;
+			this.nodeMap = nodeMap;
+			this.keys = keys;
+			this.values = values;
+			this.nodes = nodes;
+		}
+
+		boolean isSingleEntry() {
+			return nodeMap == 0 && keys.length == 1;
+		}
+	}
+
+	static final PersistentIntMap EMPTY = new PersistentIntMap(Node.EMPTY, 0);
+
+	private final Node root;
+	private final int size;
+
+	private PersistentIntMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param key the key to look up
+	 * @param missing the value returned when the key is not in the map
+	 * @return the value of the key, or missing
+	 */
+	int get(int key, int missing) {
+		Node node = root;
+		for (int shift = 0; ; shift += BITS) {
+			int bit = bit(key, shift);
+			if ((node.dataMap & bit) != 0) {
+				int index = index(node.dataMap, bit);
+				return node.keys[index] == key ? node.values[index] : missing;
+			}
+			if ((node.nodeMap & bit) == 0) {
+				return missing;
+			}
+			node = node.nodes[index(node.nodeMap, bit)];
+		}
+	}
+
+	boolean containsKey(int key) {
+		Node node = root;
+		for (int shift = 0; ; shift += BITS) {
+			int bit = bit(key, shift);
+			if ((node.dataMap & bit) != 0) {
+				return node.keys[index(node.dataMap, bit)] == key;
+			}
+			if ((node.nodeMap & bit) == 0) {
+				return false;
+			}
+			node = node.nodes[index(node.nodeMap, bit)];
+		}
+	}
+
+	/**
+	 * @return a map with the key set to the value, or this map if it already was
+	 */
+	PersistentIntMap put(int key, int value) {
+		Node changed = put(root, key, value, 0);
+		if (changed == root) {
+			return this;
+		}
+		return new PersistentIntMap(changed, containsKey(key) ? size : size + 1);
+	}
+
+	/**
+	 * @return a map without the key, or this map if the key was not there
+	 */
+	PersistentIntMap remove(int key) {
+		Node changed = remove(root, key, 0);
+		return changed == root ? this : new PersistentIntMap(changed, size - 1);
+	}
+
+	/**
+	 * Visits all the entries, in no particular order
+	 */
+	void forEach(EntryVisitor visitor) {
+		forEach(root, visitor);
+	}
+
+	private static int branch(int key, int shift) {
+		return (key >>> shift) & MASK;
+	}
+
+	private static int bit(int key, int shift) {
+		return 1 << branch(key, shift);
+	}
+
+	private static int index(int bitmap, int bit) {
+		return Integer.bitCount(bitmap & (bit - 1));
+	}
+
+	private static Node put(Node node, int key, int value, int shift) {
+		int bit = bit(key, shift);
+
+		if ((node.dataMap & bit) != 0) {
+			int index = index(node.dataMap, bit);
+			if (node.keys[index] == key) {
+				if (node.values[index] == value) {
+					return node;
+				}
+				int[] values = node.values.clone();
+				values[index] = value;
+				return new Node(node.dataMap, node.nodeMap, node.keys, values, node.nodes);
+			}
+
+			// another key owns the branch: both move down into a new child
+			Node child = pair(node.keys[index], node.values[index], key, value, shift + BITS);
+			return new Node(node.dataMap ^ bit, node.nodeMap | bit,
+				without(node.keys, index), without(node.values, index),
+				with(node.nodes, index(node.nodeMap, bit), child));
+		}
+
+		if ((node.nodeMap & bit) != 0) {
+			int index = index(node.nodeMap, bit);
+			Node child = put(node.nodes[index], key, value, shift + BITS);
+			if (child == node.nodes[index]) {
+				return node;
+			}
+			Node[] nodes = node.nodes.clone();
+			nodes[index] = child;
+			return new Node(node.dataMap, node.nodeMap, node.keys, node.values, nodes);
+		}
+
+		int index = index(node.dataMap, bit);
+		return new Node(node.dataMap | bit, node.nodeMap,
+			with(node.keys, index, key), with(node.values, index, value), node.nodes);
+	}
+
+	private static Node pair(int key1, int value1, int key2, int value2, int shift) {
+		// distinct keys part at the latest on the top two bits, so this always ends
+		int branch1 = branch(key1, shift);
+		int branch2 = branch(key2, shift);
+		if (branch1 == branch2) {
+			return new Node(0, 1 << branch1, new int[0], new int[0],
+				new Node[] { pair(key1, value1, key2, value2, shift + BITS) });
+		}
+
+		// entries are stored by increasing branch
+		int dataMap = (1 << branch1) | (1 << branch2);
+		return branch1 < branch2
+			? new Node(dataMap, 0, new int[] { key1, key2 }, new int[] { value1, value2 }, new Node[0])
+			: new Node(dataMap, 0, new int[] { key2, key1 }, new int[] { value2, value1 }, new Node[0]);
+	}
+
+	private static Node remove(Node node, int key, int shift) {
+		int bit = bit(key, shift);
+
+		if ((node.dataMap & bit) != 0) {
+			int index = index(node.dataMap, bit);
+			if (node.keys[index] != key) {
+				return node;
+			}
+			return new Node(node.dataMap ^ bit, node.nodeMap,
+				without(node.keys, index), without(node.values, index), node.nodes);
+		}
+
+		if ((node.nodeMap & bit) != 0) {
+			int index = index(node.nodeMap, bit);
+			Node child = remove(node.nodes[index], key, shift + BITS);
+			if (child == node.nodes[index]) {
+				return node;
+			}
+
+			if (child.isSingleEntry()) {
+				// a child left with one entry is folded back, so equal maps have the same shape
+				int dataIndex = index(node.dataMap, bit);
+				return new Node(node.dataMap | bit, node.nodeMap ^ bit,
+					with(node.keys, dataIndex, child.keys[0]), with(node.values, dataIndex, child.values[0]),
+					without(node.nodes, index));
+			}
+			Node[] nodes = node.nodes.clone();
+			nodes[index] = child;
+			return new Node(node.dataMap, node.nodeMap, node.keys, node.values, nodes);
+		}
+
+		return node;
+	}
+
+	private static void forEach(Node node, EntryVisitor visitor) {
+		for (int i = 0; i < node.keys.length; i++) {
+			visitor.visit(node.keys[i], node.values[i]);
+		}
+		for (Node child : node.nodes) {
+			forEach(child, visitor);
+		}
+	}
+
+	private static int[] with(int[] array, int index, int element) {
+		int[] grown = new int[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		grown[index] = element;
+		System.arraycopy(array, index, grown, index + 1, array.length - index);
+		return grown;
+	}
+
+	private static int[] without(int[] array, int index) {
+		int[] shrunk = new int[array.length - 1];
+		System.arraycopy(array, 0, shrunk, 0, index);
+		System.arraycopy(array, index + 1, shrunk, index, shrunk.length - index);
+		return shrunk;
+	}
+
+	private static Node[] with(Node[] array, int index, Node element) {
+		Node[] grown = new Node[array.length + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		grown[index] = element;
+		System.arraycopy(array, index, grown, index + 1, array.length - index);
+		return grown;
+	}
+
+	private static Node[] without(Node[] array, int index) {
+		Node[] shrunk = new Node[array.length - 1];
+		System.arraycopy(array, 0, shrunk, 0, index);
+		System.arraycopy(array, index + 1, shrunk, index, shrunk.length - index);
+		return shrunk;
+	}
+
+}
@@ -0,0 +1,218 @@
+package it.polito.library;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Append-only log of all the rentals of the library.
+ * Every rental is a row spread over primitive columns: the copy and reader
+ * slots, the starting and ending dates as epoch days, and the previous row
+ * of the same copy, so the history of a copy can be walked without scanning
+ * the whole log.
+ * Writers take the write lock; readers walk the columns optimistically and
+ * only take the read lock when a write overlapped their walk.
+ * Closing a rental also records its position among all the closings, so the
+ * log can be read as it was at a {@link Cut} while writers keep going.
+ * The open rentals, the latest row of each copy and the rental counts are kept
+ * in persistent maps replaced on every write, so a cut keeps them as they were for free.
+ */
+class RentalLog {
+
+	/** Ending date of a rental that is still ongoing */
+	static final int ONGOING = Integer.MIN_VALUE;
+	/** Previous row of the first rental of a copy */
+	static final int NONE = -1;
+	/** Number of values per row returned by {@link #history(int)} */
+	static final int HISTORY_FIELDS = 3;
+
+	/**
+	 * Point in the log: the rows appended and the rentals closed before it.
+	 * Rows below the cut never change again except for their closing,
+	 * which the cut tells apart.
+	 */
+	static final class Cut {
+		final int closes;
+		// reader slot -> copy slot of the rentals open at the cut
+		final PersistentIntMap open;
+		// copy slot -> latest row of the copy up to the cut
+		final PersistentIntMap lastRows;
+		// reader slot or title code -> number of rentals up to the cut
+		final PersistentIntMap readerRentals;
+		final PersistentIntMap titleRentals;
+
+		private Cut(int closes, PersistentIntMap open, PersistentIntMap lastRows,
+				PersistentIntMap readerRentals, PersistentIntMap titleRentals) {
+			this.closes = closes;
+			this.open = open;
+			this.lastRows = lastRows;
+			this.readerRentals = readerRentals;
+			this.titleRentals = titleRentals;
+		}
+	}
+
+	private final StampedLock lock = new StampedLock();
+	// columns are replaced only when growing, and readers without the lock rely on
+	// the volatile write to see the copied rows
+	private volatile int[] book = new int[16];
+	private volatile int[] reader = new int[16];
+	private volatile int[] start = new int[16];
+	private volatile int[] end = new int[16];
+	private volatile int[] previous = new int[16];
+	// position of the closing of each row among all the closings, 0 while ongoing
+	private volatile int[] closedAt = new int[16];
+	private int size = 0;
+	private int closes = 0;
+	private PersistentIntMap open = PersistentIntMap.EMPTY;
+	private PersistentIntMap lastRows = PersistentIntMap.EMPTY;
+	private PersistentIntMap readerRentals = PersistentIntMap.EMPTY;
+	private PersistentIntMap titleRentals = PersistentIntMap.EMPTY;
+
+	/**
+	 * Appends an ongoing rental to the log
+	 *
+	 * @param bookSlot the slot of the rented copy
+	 * @param readerSlot the slot of the reader
+	 * @param title the code of the title of the copy
+	 * @param startDay the starting date as epoch day
+	 * @param previousRow the last row of the same copy, or {@link #NONE}
+	 * @return the row of the new rental
+	 */
+	int append(int bookSlot, int readerSlot, int title, int startDay, int previousRow) {
+		long stamp = lock.writeLock();
+		try {
+			if (size == book.length) {
+				int capacity = size * 2;
+				book = Arrays.copyOf(book, capacity);
+				reader = Arrays.copyOf(reader, capacity);
+				start = Arrays.copyOf(start, capacity);
+				end = Arrays.copyOf(end, capacity);
+				previous = Arrays.copyOf(previous, capacity);
+				closedAt = Arrays.copyOf(closedAt, capacity);
+			}
+
+			book[size] = bookSlot;
+			reader[size] = readerSlot;
+			start[size] = startDay;
+			end[size] = ONGOING;
+			previous[size] = previousRow;
+			open = open.put(readerSlot, bookSlot);
+			lastRows = lastRows.put(bookSlot, size);
+			readerRentals = readerRentals.put(readerSlot, readerRentals.get(readerSlot, 0) + 1);
+			titleRentals = titleRentals.put(title, titleRentals.get(title, 0) + 1);
+			return size++;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	void close(int row, int endDay) {
+		long stamp = lock.writeLock();
+		try {
+			end[row] = endDay;
+			closedAt[row] = ++closes;
+			open = open.remove(reader[row]);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return the current point in the log
+	 */
+	Cut cut() {
+		long stamp = lock.readLock();
+		try {
+			return new Cut(closes, open, lastRows, readerRentals, titleRentals);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Reads the history of a copy, newest rental first
+	 *
+	 * @param lastRow the latest row of the copy, or {@link #NONE}
+	 * @return the reader slot, starting day and ending day of each rental,
+	 * {@link #HISTORY_FIELDS} values per rental
+	 */
+	int[] history(int lastRow) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				int[] history = collect(lastRow);
+				if (lock.validate(stamp)) {
+					return history;
+				}
+			} catch (RuntimeException e) {
+				// columns swapped by a concurrent append; read them again under the lock
+			}
+		}
+
+		stamp = lock.readLock();
+		try {
+			return collect(lastRow);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Reads the history of a copy as it was at a cut, newest rental first.
+	 * Never locks: rows below the cut are read as they are, and a closing
+	 * that raced with the read is only used if it came before the cut.
+	 *
+	 * @param bookSlot the slot of the copy
+	 * @param cut the point in the log
+	 * @return the values described by {@link #history(int)}
+	 */
+	int[] history(int bookSlot, Cut cut) {
+		int row = cut.lastRows.get(bookSlot, NONE);
+		int[] history = collect(row);
+		int[] previous = this.previous;
+		int[] closedAt = this.closedAt;
+		for (int i = 2; i < history.length; i += HISTORY_FIELDS, row = previous[row]) {
+			if (!closedBefore(closedAt[row], cut)) {
+				history[i] = ONGOING;
+			}
+		}
+		return history;
+	}
+
+	/**
+	 * Tells whether a copy was rented at a cut. Never locks, like {@link #history(int, Cut)}.
+	 *
+	 * @param bookSlot the slot of the copy
+	 * @param cut the point in the log
+	 * @return true if the latest rental of the copy up to the cut was still open at the cut
+	 */
+	boolean rentedAt(int bookSlot, Cut cut) {
+		int row = cut.lastRows.get(bookSlot, NONE);
+		return row != NONE && !closedBefore(closedAt[row], cut);
+	}
+
+	private static boolean closedBefore(int closing, Cut cut) {
+		return closing != 0 && closing <= cut.closes;
+	}
+
+	private int[] collect(int lastRow) {
+		int[] reader = this.reader;
+		int[] start = this.start;
+		int[] end = this.end;
+		int[] previous = this.previous;
+
+		int count = 0;
+		for (int row = lastRow; row != NONE; row = previous[row]) {
+			count++;
+		}
+
+		int[] history = new int[count * HISTORY_FIELDS];
+		int i = 0;
+		for (int row = lastRow; row != NONE; row = previous[row]) {
+			history[i++] = reader[row];
+			history[i++] = start[row];
+			history[i++] = end[row];
+		}
+		return history;
+	}
+
+}
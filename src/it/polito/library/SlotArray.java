@@ -0,0 +1,81 @@
+package it.polito.library;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Growable array of elements indexed by slot, safe for concurrent use.
+ * Slots are stored in fixed-size chunks allocated on first use, so reads
+ * never lock and growing never copies the elements already stored.
+ */
+class SlotArray<T> {
+
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private volatile AtomicReferenceArray<AtomicReferenceArray<T>> chunks = new AtomicReferenceArray<>(0);
+	// one past the highest slot ever written
+	private final AtomicInteger limit = new AtomicInteger();
+	private final ReentrantLock growing = new ReentrantLock();
+
+	/**
+	 * @param slot the slot to read
+	 * @return the element in the slot, or null if the slot is empty or was never written
+	 */
+	T get(int slot) {
+		AtomicReferenceArray<AtomicReferenceArray<T>> chunks = this.chunks;
+		int index = slot >>> CHUNK_BITS;
+		if (slot < 0 || index >= chunks.length()) {
+			return null;
+		}
+
+		AtomicReferenceArray<T> chunk = chunks.get(index);
+		return chunk == null ? null : chunk.get(slot & (CHUNK_SIZE - 1));
+	}
+
+	/**
+	 * @param slot the slot to write
+	 * @param element the element to store, or null to empty the slot
+	 */
+	void set(int slot, T element) {
+		chunkOf(slot).set(slot & (CHUNK_SIZE - 1), element);
+		limit.accumulateAndGet(slot + 1, Math::max);
+	}
+
+	/**
+	 * @return one past the highest slot ever written
+	 */
+	int limit() {
+		return limit.get();
+	}
+
+	private AtomicReferenceArray<T> chunkOf(int slot) {
+		int index = slot >>> CHUNK_BITS;
+		AtomicReferenceArray<AtomicReferenceArray<T>> chunks = this.chunks;
+		if (index < chunks.length() && chunks.get(index) != null) {
+			return chunks.get(index);
+		}
+
+		growing.lock();
+		try {
+			chunks = this.chunks;
+			if (index >= chunks.length()) {
+				AtomicReferenceArray<AtomicReferenceArray<T>> grown =
+					new AtomicReferenceArray<>(Math.max(index + 1, chunks.length() * 2));
+				for (int i = 0; i < chunks.length(); i++) {
+					grown.set(i, chunks.get(i));
+				}
+				this.chunks = chunks = grown;
+			}
+
+			if (chunks.get(index) == null) {
+				chunks.set(index, new AtomicReferenceArray<>(CHUNK_SIZE));
+			}
+			return chunks.get(index);
+		} finally {
+			growing.unlock();
+		}
+	}
+
+}
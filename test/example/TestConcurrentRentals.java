@@ -0,0 +1,155 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import it.polito.library.LibStatus;
+import it.polito.library.LibraryManager;
+
+public class TestConcurrentRentals {
+
+	private static final int THREADS = 8;
+	private static final int COPIES = 4;
+	private static final int READERS = 6;
+	private static final int ATTEMPTS = 50_000;
+
+    @Test
+    public void testNoDoubleRental() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    for (int i = 0; i < COPIES; i++) {
+	    	lib.addBook("Dance Dance Dance");
+	    }
+	    for (int i = 0; i < READERS; i++) {
+	    	lib.addReader("Maria", "Verdi");
+	    }
+
+	    // who holds each copy and reader according to the successful calls
+	    AtomicIntegerArray copyHolders = new AtomicIntegerArray(COPIES);
+	    AtomicIntegerArray readerHolders = new AtomicIntegerArray(READERS);
+	    AtomicInteger violations = new AtomicInteger();
+	    AtomicInteger started = new AtomicInteger();
+
+	    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+	    List<Future<?>> workers = new ArrayList<>();
+	    for (int t = 0; t < THREADS; t++) {
+	    	long seed = t;
+	    	workers.add(executor.submit(() -> {
+	    		Random random = new Random(seed);
+	    		for (int i = 0; i < ATTEMPTS; i++) {
+	    			int copy = random.nextInt(COPIES);
+	    			int reader = random.nextInt(READERS);
+	    			String bookID = Integer.toString(1000 + copy);
+	    			String readerID = Integer.toString(1000 + reader);
+
+	    			if (lib.tryStartRental(bookID, readerID, "14-07-2023") != LibStatus.OK) {
+	    				continue;
+	    			}
+	    			started.incrementAndGet();
+	    			if (!copyHolders.compareAndSet(copy, 0, 1) || !readerHolders.compareAndSet(reader, 0, 1)) {
+	    				violations.incrementAndGet();
+	    			}
+
+	    			copyHolders.set(copy, 0);
+	    			readerHolders.set(reader, 0);
+	    			if (lib.tryEndRental(bookID, readerID, "15-07-2023") != LibStatus.OK) {
+	    				violations.incrementAndGet();
+	    			}
+	    		}
+	    		return null;
+	    	}));
+	    }
+	    for (Future<?> worker : workers) {
+	    	worker.get();
+	    }
+	    executor.shutdown();
+
+	    assertEquals(0, violations.get());
+	    assertEquals(0, lib.getOngoingRentals().size());
+	    assertEquals(Integer.valueOf(started.get()), lib.rentalCounts().get("Dance Dance Dance"));
+	    assertEquals("1000", lib.getAvailableBook("Dance Dance Dance"));
+    }
+
+    @Test
+    public void testRemoveBooksNeverRejectsFreeCopies() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    lib.addBook("Dance Dance Dance");
+	    lib.addReader("Maria", "Verdi");
+	    lib.startRental("1000", "1000", "14-07-2023");
+	    lib.endRental("1000", "1000", "15-07-2023");
+
+	    AtomicInteger violations = new AtomicInteger();
+	    ExecutorService executor = Executors.newFixedThreadPool(2);
+	    Future<?> renter = executor.submit(() -> {
+	    	for (int i = 0; i < ATTEMPTS; i++) {
+	    		// the only reader rents free copies: a copy rented before, or one the sweep may remove
+	    		String bookID = i % 2 == 0 ? "1000" : lib.addBook("Lolita");
+	    		LibStatus status = lib.tryStartRental(bookID, "1000", "14-07-2023");
+	    		if (status == LibStatus.OK) {
+	    			lib.tryEndRental(bookID, "1000", "15-07-2023");
+	    		} else if (status != LibStatus.NOT_PRESENT || bookID.equals("1000")) {
+	    			violations.incrementAndGet();
+	    		}
+	    	}
+	    	return null;
+	    });
+	    Future<?> sweeper = executor.submit(() -> {
+	    	while (!renter.isDone()) {
+	    		lib.removeBooks();
+	    	}
+	    	return null;
+	    });
+	    renter.get();
+	    sweeper.get();
+	    executor.shutdown();
+
+	    assertEquals(0, violations.get());
+    }
+
+    @Test
+    public void testNewCopiesNeverRejected() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    lib.addReader("Maria", "Verdi");
+	    lib.addBook("Lolita");
+
+	    AtomicInteger violations = new AtomicInteger();
+	    ExecutorService executor = Executors.newFixedThreadPool(2);
+	    Future<?> adder = executor.submit(() -> {
+	    	for (int i = 0; i < ATTEMPTS; i++) {
+	    		lib.addBook("Dance Dance Dance");
+	    	}
+	    	return null;
+	    });
+	    Future<?> renter = executor.submit(() -> {
+	    	// the only reader rents each copy as soon as it is listed
+	    	for (int number = 1001; number <= 1000 + ATTEMPTS; ) {
+	    		String bookID = Integer.toString(number);
+	    		if (!lib.getBooks().contains(bookID)) {
+	    			Thread.onSpinWait();
+	    			continue;
+	    		}
+	    		LibStatus status = lib.tryStartRental(bookID, "1000", "14-07-2023");
+	    		if (status != LibStatus.OK || lib.tryEndRental(bookID, "1000", "15-07-2023") != LibStatus.OK) {
+	    			violations.incrementAndGet();
+	    		}
+	    		number++;
+	    	}
+	    	return null;
+	    });
+	    adder.get();
+	    renter.get();
+	    executor.shutdown();
+
+	    assertEquals(0, violations.get());
+    }
+
+}
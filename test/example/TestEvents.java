@@ -0,0 +1,182 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import it.polito.library.LibException;
+import it.polito.library.LibStatus;
+import it.polito.library.LibraryEvent;
+import it.polito.library.LibraryManager;
+
+public class TestEvents {
+
+	private static class Collector implements Flow.Subscriber<LibraryEvent> {
+		final List<LibraryEvent> events = new CopyOnWriteArrayList<>();
+		final List<Throwable> errors = new CopyOnWriteArrayList<>();
+		final CountDownLatch received;
+		final CountDownLatch subscribed = new CountDownLatch(1);
+		final long demand;
+		volatile Flow.Subscription subscription;
+
+		Collector(int expected, long demand) {
+			this.received = new CountDownLatch(expected);
+			this.demand = demand;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscribed.countDown();
+			if (demand > 0) {
+				subscription.request(demand);
+			}
+		}
+
+		@Override
+		public void onNext(LibraryEvent event) {
+			events.add(event);
+			received.countDown();
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			errors.add(error);
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+
+    @Test
+    public void testEventSequence() throws LibException, InterruptedException {
+	    LibraryManager lib = new LibraryManager();
+	    Collector collector = new Collector(6, Long.MAX_VALUE);
+	    lib.events().subscribe(collector);
+
+	    lib.addBook("Dance Dance Dance");
+	    lib.addBook("Lolita");
+	    lib.addReader("Maria", "Verdi");
+	    lib.startRental("1000", "1000", "12-07-2023");
+	    lib.endRental("1000", "1000", "13-07-2023");
+	    lib.removeBooks();
+
+	    assertTrue(collector.received.await(10, TimeUnit.SECONDS));
+	    List<LibraryEvent> events = collector.events;
+	    assertEquals(6, events.size());
+
+	    LibraryEvent.BookAdded added = (LibraryEvent.BookAdded) events.get(0);
+	    assertEquals("1000", added.getBookId());
+	    assertEquals("Dance Dance Dance", added.getTitle());
+	    added = (LibraryEvent.BookAdded) events.get(1);
+	    assertEquals("1001", added.getBookId());
+	    assertEquals("Lolita", added.getTitle());
+
+	    LibraryEvent.ReaderAdded reader = (LibraryEvent.ReaderAdded) events.get(2);
+	    assertEquals("1000", reader.getReaderId());
+	    assertEquals("Maria Verdi", reader.getName());
+
+	    LibraryEvent.RentalStarted started = (LibraryEvent.RentalStarted) events.get(3);
+	    assertEquals("1000", started.getBookId());
+	    assertEquals("1000", started.getReaderId());
+	    assertEquals("12-07-2023", started.getStartingDate());
+
+	    LibraryEvent.RentalEnded ended = (LibraryEvent.RentalEnded) events.get(4);
+	    assertEquals("1000", ended.getBookId());
+	    assertEquals("1000", ended.getReaderId());
+	    assertEquals("13-07-2023", ended.getEndingDate());
+
+	    // the rented copy is kept
+	    LibraryEvent.BooksRemoved removed = (LibraryEvent.BooksRemoved) events.get(5);
+	    assertEquals(List.of("1001"), removed.getBookIds());
+	    assertEquals(0, collector.errors.size());
+
+	    for (int i = 0; i < events.size(); i++) {
+	    	assertEquals(i, events.get(i).getSequence());
+	    }
+    }
+
+    @Test
+    public void testDroppedEventsLeaveGap() throws InterruptedException {
+	    LibraryManager lib = new LibraryManager();
+	    // requests nothing at first, so its buffer fills up
+	    Collector collector = new Collector(1, 0) {
+	    	@Override
+	    	public void onNext(LibraryEvent event) {
+	    		events.add(event);
+	    		if (event instanceof LibraryEvent.BookAdded && ((LibraryEvent.BookAdded) event).getTitle().equals("Lolita")) {
+	    			received.countDown();
+	    		}
+	    	}
+	    };
+	    lib.events().subscribe(collector);
+
+	    int added = 2 * Flow.defaultBufferSize();
+	    for (int i = 0; i < added; i++) {
+	    	lib.addBook("Dance Dance Dance");
+	    }
+	    assertTrue(collector.subscribed.await(10, TimeUnit.SECONDS));
+	    collector.subscription.request(Long.MAX_VALUE);
+	    // the buffer drains in the background, so copies are added until one gets through
+	    do {
+	    	lib.addBook("Lolita");
+	    	added++;
+	    } while (!collector.received.await(10, TimeUnit.MILLISECONDS));
+
+	    List<LibraryEvent> events = collector.events;
+	    assertEquals(0, collector.errors.size());
+	    assertTrue(events.size() < added);
+
+	    // the numbers only go up, and skip the dropped events
+	    int gaps = 0;
+	    for (int i = 1; i < events.size(); i++) {
+	    	long step = events.get(i).getSequence() - events.get(i - 1).getSequence();
+	    	assertTrue(step >= 1);
+	    	if (step > 1) {
+	    		gaps++;
+	    	}
+	    }
+	    assertTrue(gaps > 0);
+	    // the library itself is not held back
+	    assertEquals(added, lib.getBooks().size());
+    }
+
+    @Test
+    public void testFailingSubscriberNeverHoldsLibrary() throws LibException {
+	    LibraryManager lib = new LibraryManager();
+	    for (long demand : new long[] { 0, Long.MAX_VALUE }) {
+	    	lib.events().subscribe(new Collector(0, demand) {
+	    		@Override
+	    		public void onNext(LibraryEvent event) {
+	    			throw new IllegalStateException("Subscriber failed");
+	    		}
+
+	    		@Override
+	    		public void onError(Throwable error) {
+	    			throw new IllegalStateException("Subscriber failed again");
+	    		}
+	    	});
+	    }
+
+	    int added = 2 * Flow.defaultBufferSize();
+	    for (int i = 0; i < added; i++) {
+	    	lib.addBook("Dance Dance Dance");
+	    }
+	    lib.addReader("Maria", "Verdi");
+
+	    String last = Integer.toString(1000 + added - 1);
+	    lib.startRental(last, "1000", "12-07-2023");
+	    lib.endRental(last, "1000", "13-07-2023");
+	    assertEquals("1000", lib.getAvailableBook("Dance Dance Dance"));
+	    assertEquals(LibStatus.OK, lib.tryStartRental("1000", "1000", "14-07-2023"));
+    }
+
+}
@@ -0,0 +1,55 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import it.polito.library.LibException;
+import it.polito.library.LibraryManager;
+
+public class TestIds {
+
+    @Test
+    public void testTenDigitIds() throws LibException {
+	    LibraryManager lib = new LibraryManager(999_999_999, 999_999_999);
+	    lib.addBook("Dance Dance Dance");
+	    assertEquals("1000000000", lib.addBook("Dance Dance Dance"));
+	    lib.addReader("Maria", "Verdi");
+	    lib.addReader("Gianni", "Fidenza");
+
+	    assertEquals(2, lib.getBooks().size());
+	    assertTrue(lib.getBooks().contains("1000000000"));
+	    assertEquals("Gianni Fidenza", lib.getReaderName("1000000000"));
+	    lib.startRental("1000000000", "1000000000", "12-07-2023");
+	    assertEquals("12-07-2023 ONGOING", lib.getRentals("1000000000").get("1000000000"));
+
+	    lib.removeBooks();
+	    assertEquals(1, lib.getBooks().size());
+	    assertTrue(lib.getBooks().contains("1000000000"));
+	    assertEquals("Not available", lib.getAvailableBook("Dance Dance Dance"));
+	    assertEquals(1, lib.snapshot().getBooks().size());
+    }
+
+    @Test
+    public void testIdsExhausted() {
+	    LibraryManager lib = new LibraryManager(Integer.MAX_VALUE - 2, 1000);
+	    lib.addBook("Dance Dance Dance");
+	    assertEquals(Integer.toString(Integer.MAX_VALUE - 1), lib.addBook("Lolita"));
+	    try {
+	    	lib.addBook("Lolita");
+	    	fail("No IDs left");
+	    } catch (IllegalStateException e) {
+	    	// expected
+	    }
+	    try {
+	    	lib.receiveDonation("Lolita,Lolita");
+	    	fail("No IDs left");
+	    } catch (IllegalStateException e) {
+	    	// expected
+	    }
+	    assertEquals(2, lib.getBooks().size());
+    }
+
+}
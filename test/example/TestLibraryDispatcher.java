@@ -0,0 +1,96 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import it.polito.library.LibStatus;
+import it.polito.library.LibraryDispatcher;
+import it.polito.library.LibraryManager;
+
+public class TestLibraryDispatcher {
+
+	private static final int SESSIONS = 200;
+	private static final int ATTEMPTS = 500;
+
+    @Test
+    public void testSessionsShareLibrary() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    for (int i = 0; i < SESSIONS; i++) {
+	    	lib.addBook("Dance Dance Dance");
+	    	lib.addReader("Maria", "Verdi");
+	    }
+
+	    List<Future<LibStatus>> rentals = new ArrayList<>();
+	    try (LibraryDispatcher dispatcher = new LibraryDispatcher(lib)) {
+	    	for (int i = 0; i < SESSIONS; i++) {
+	    		String id = Integer.toString(1000 + i);
+	    		rentals.add(dispatcher.dispatch((library) -> library.tryStartRental(id, id, "12-07-2023")));
+	    	}
+	    }
+
+	    for (Future<LibStatus> rental : rentals) {
+	    	assertTrue(rental.isDone());
+	    	assertEquals(LibStatus.OK, rental.get());
+	    }
+	    assertEquals(SESSIONS, lib.getOngoingRentals().size());
+	    assertEquals("Not available", lib.getAvailableBook("Dance Dance Dance"));
+    }
+
+    @Test
+    public void testContendedCopy() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    lib.addBook("Dance Dance Dance");
+	    for (int i = 0; i < SESSIONS; i++) {
+	    	lib.addReader("Maria", "Verdi");
+	    }
+
+	    // every session fights for the one copy while others read its history
+	    List<Future<Integer>> sessions = new ArrayList<>();
+	    try (LibraryDispatcher dispatcher = new LibraryDispatcher(lib)) {
+	    	for (int i = 0; i < SESSIONS; i++) {
+	    		String readerID = Integer.toString(1000 + i);
+	    		sessions.add(dispatcher.dispatch((library) -> {
+	    			int rented = 0;
+	    			for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+	    				if (library.tryStartRental("1000", readerID, "12-07-2023") == LibStatus.OK) {
+	    					rented++;
+	    					library.getRentals("1000");
+	    					assertEquals(LibStatus.OK, library.tryEndRental("1000", readerID, "13-07-2023"));
+	    				}
+	    			}
+	    			return rented;
+	    		}));
+	    	}
+	    }
+
+	    int rented = 0;
+	    for (Future<Integer> session : sessions) {
+	    	rented += session.get();
+	    }
+	    assertTrue(rented > 0);
+	    assertEquals(Integer.valueOf(rented), lib.rentalCounts().get("Dance Dance Dance"));
+	    assertEquals(0, lib.getOngoingRentals().size());
+	    assertEquals("1000", lib.getAvailableBook("Dance Dance Dance"));
+    }
+
+    @Test
+    public void testCloseWaitsForSessions() throws Exception {
+	    Future<String> session;
+	    try (LibraryDispatcher dispatcher = new LibraryDispatcher(new LibraryManager())) {
+	    	session = dispatcher.dispatch((library) -> {
+	    		Thread.sleep(100);
+	    		return library.addBook("Lolita");
+	    	});
+	    }
+
+	    assertTrue(session.isDone());
+	    assertEquals("1000", session.get());
+    }
+
+}
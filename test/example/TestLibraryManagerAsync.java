@@ -0,0 +1,78 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import it.polito.library.LibException;
+import it.polito.library.LibraryManager;
+import it.polito.library.LibraryManagerAsync;
+
+public class TestLibraryManagerAsync {
+
+    @Test
+    public void testCompletes() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    LibraryManagerAsync async = new LibraryManagerAsync(lib);
+
+	    assertEquals("1000", async.addBookAsync("Dance Dance Dance").get(10, TimeUnit.SECONDS));
+	    async.addReaderAsync("Maria", "Verdi").get(10, TimeUnit.SECONDS);
+	    async.startRentalAsync("1000", "1000", "12-07-2023").get(10, TimeUnit.SECONDS);
+
+	    assertEquals("Maria Verdi", async.getReaderNameAsync("1000").get(10, TimeUnit.SECONDS));
+	    assertEquals("Not available", async.getAvailableBookAsync("Dance Dance Dance").get(10, TimeUnit.SECONDS));
+	    assertEquals("12-07-2023 ONGOING", async.getRentalsAsync("1000").get(10, TimeUnit.SECONDS).get("1000"));
+	    assertEquals(List.of("1000"), async.topReadersAsync(3).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectedOperation() throws Exception {
+	    LibraryManagerAsync async = new LibraryManagerAsync(new LibraryManager());
+	    try {
+	    	async.getReaderNameAsync("1000").get(10, TimeUnit.SECONDS);
+	    	fail("Reader not present");
+	    } catch (ExecutionException e) {
+	    	assertTrue(e.getCause() instanceof LibException);
+	    }
+    }
+
+    @Test
+    public void testErrorCompletesFuture() throws Exception {
+	    LibraryManager lib = new LibraryManager() {
+	    	@Override
+	    	public String addBook(String title) {
+	    		throw new AssertionError("No books");
+	    	}
+	    };
+	    LibraryManagerAsync async = new LibraryManagerAsync(lib);
+	    try {
+	    	async.addBookAsync("Lolita").get(10, TimeUnit.SECONDS);
+	    	fail("Operation threw an Error");
+	    } catch (ExecutionException e) {
+	    	assertTrue(e.getCause() instanceof AssertionError);
+	    }
+    }
+
+    @Test
+    public void testExecutorRejection() throws Exception {
+	    ExecutorService executor = Executors.newSingleThreadExecutor();
+	    executor.shutdown();
+	    LibraryManagerAsync async = new LibraryManagerAsync(new LibraryManager(), executor);
+	    try {
+	    	async.addBookAsync("Lolita").get(10, TimeUnit.SECONDS);
+	    	fail("Executor shut down");
+	    } catch (ExecutionException e) {
+	    	assertTrue(e.getCause() instanceof RejectedExecutionException);
+	    }
+    }
+
+}
@@ -0,0 +1,92 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import it.polito.library.LibException;
+import it.polito.library.LibraryManager;
+import it.polito.library.LibraryPipeline;
+
+public class TestLibraryPipeline {
+
+    @Test
+    public void testAppliedInSubmissionOrder() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    List<CompletableFuture<String>> added = new ArrayList<>();
+	    CompletableFuture<Void> ended;
+	    try (LibraryPipeline pipeline = new LibraryPipeline(lib, 16, 4)) {
+	    	for (int i = 0; i < 100; i++) {
+	    		added.add(pipeline.addBook("Dance Dance Dance"));
+	    	}
+	    	pipeline.addReader("Maria", "Verdi");
+	    	pipeline.startRental("1000", "1000", "12-07-2023");
+	    	ended = pipeline.endRental("1000", "1000", "13-07-2023");
+	    }
+
+	    for (int i = 0; i < added.size(); i++) {
+	    	assertEquals(Integer.toString(1000 + i), added.get(i).get());
+	    }
+	    ended.get();
+	    assertEquals("12-07-2023 13-07-2023", lib.getRentals("1000").get("1000"));
+    }
+
+    @Test
+    public void testRejectedOperation() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    try (LibraryPipeline pipeline = new LibraryPipeline(lib)) {
+	    	CompletableFuture<Void> rental = pipeline.startRental("1000", "1000", "12-07-2023");
+	    	try {
+	    		rental.get();
+	    		fail("Neither book nor reader present");
+	    	} catch (ExecutionException e) {
+	    		assertTrue(e.getCause() instanceof LibException);
+	    	}
+	    	assertEquals("1000", pipeline.addBook("Lolita").get());
+	    }
+    }
+
+    @Test
+    public void testErrorFailsOnlyItsCommand() throws Exception {
+	    LibraryManager lib = new LibraryManager() {
+	    	@Override
+	    	public String addBook(String title) {
+	    		if (title.isEmpty()) {
+	    			throw new AssertionError("No title");
+	    		}
+	    		return super.addBook(title);
+	    	}
+	    };
+	    try (LibraryPipeline pipeline = new LibraryPipeline(lib)) {
+	    	try {
+	    		pipeline.addBook("").get();
+	    		fail("Command threw an Error");
+	    	} catch (ExecutionException e) {
+	    		assertTrue(e.getCause() instanceof AssertionError);
+	    	}
+	    	assertEquals("1000", pipeline.addBook("Lolita").get());
+	    }
+    }
+
+    @Test
+    public void testSubmitAfterClose() {
+	    LibraryPipeline pipeline = new LibraryPipeline(new LibraryManager());
+	    pipeline.close();
+	    pipeline.close();
+	    try {
+	    	pipeline.addBook("Lolita");
+	    	fail("Pipeline closed");
+	    } catch (RejectedExecutionException e) {
+	    	// expected
+	    }
+    }
+
+}
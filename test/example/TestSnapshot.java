@@ -0,0 +1,152 @@
+package example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import it.polito.library.LibException;
+import it.polito.library.LibStatus;
+import it.polito.library.LibraryManager;
+
+public class TestSnapshot {
+
+	private static final int COPIES = 4;
+	private static final int READERS = 6;
+	private static final int ATTEMPTS = 20_000;
+
+    @Test
+    public void testLaterChangesNotVisible() throws LibException {
+	    LibraryManager lib = new LibraryManager();
+	    lib.addBook("Dance Dance Dance");
+	    lib.addBook("Lolita");
+	    lib.addBook("Dance Dance Dance");
+	    lib.addReader("Maria", "Verdi");
+	    lib.addReader("Gianni", "Fidenza");
+	    lib.startRental("1000", "1000", "12-07-2023");
+
+	    LibraryManager.Snapshot snapshot = lib.snapshot();
+
+	    lib.endRental("1000", "1000", "13-07-2023");
+	    lib.startRental("1002", "1001", "13-07-2023");
+	    lib.addBook("Master and Margarita");
+	    lib.addReader("Mario", "Rossi");
+	    lib.removeBooks();
+
+	    assertEquals(2, snapshot.getTitles().size());
+	    assertEquals(Integer.valueOf(2), snapshot.getTitles().get("Dance Dance Dance"));
+	    assertEquals(3, snapshot.getBooks().size());
+	    assertEquals("1002", snapshot.getAvailableBook("Dance Dance Dance"));
+	    assertEquals("1001", snapshot.getAvailableBook("Lolita"));
+	    assertEquals("12-07-2023 ONGOING", snapshot.getRentals("1000").get("1000"));
+	    assertEquals(0, snapshot.getRentals("1002").size());
+	    assertEquals(Map.of("1000", "1000"), snapshot.getOngoingRentals());
+	    assertEquals("1000", snapshot.findBookWorm());
+	    assertEquals(List.of("1000"), snapshot.topReaders(3));
+	    assertEquals(Map.of("Dance Dance Dance", 1), snapshot.rentalCounts());
+	    assertEquals("Gianni Fidenza", snapshot.getReaderName("1001"));
+	    try {
+	    	snapshot.getReaderName("1002");
+	    	fail("Reader added after the snapshot");
+	    } catch (LibException e) {
+	    	// expected
+	    }
+
+	    // the copy removed after the snapshot is gone from the library only
+	    assertTrue(snapshot.getBooks().contains("1001"));
+	    assertTrue(!lib.getBooks().contains("1001"));
+	    assertEquals("13-07-2023 ONGOING", lib.getRentals("1002").get("1001"));
+    }
+
+    @Test
+    public void testQueriesAtTheirVersion() throws LibException {
+	    LibraryManager lib = new LibraryManager();
+	    for (int i = 0; i < 3; i++) {
+	    	lib.addBook("Dance Dance Dance");
+	    }
+	    lib.addReader("Maria", "Verdi");
+	    lib.addReader("Gianni", "Fidenza");
+	    lib.startRental("1000", "1001", "12-07-2023");
+
+	    LibraryManager.Snapshot before = lib.snapshot();
+	    lib.removeBooks();
+	    lib.endRental("1000", "1001", "13-07-2023");
+	    LibraryManager.Snapshot after = lib.snapshot();
+
+	    // each query is answered on its own, in any order
+	    assertEquals("1001", before.getAvailableBook("Dance Dance Dance"));
+	    assertEquals(Set.of("1000", "1001", "1002"), new HashSet<>(before.getBooks()));
+	    assertEquals(3, before.getBooks().size());
+	    assertTrue(before.getBooks().contains("1002"));
+	    assertEquals(Map.of("Dance Dance Dance", 3), before.getTitles());
+
+	    assertEquals(List.of("1001"), after.topReaders(5));
+	    assertEquals(Map.of("Dance Dance Dance", 1), after.rentalCounts());
+	    assertEquals(Map.of("Dance Dance Dance", 1), after.getTitles());
+	    assertEquals("1000", after.getAvailableBook("Dance Dance Dance"));
+	    assertEquals(Set.of("1000"), new HashSet<>(after.getBooks()));
+	    assertTrue(!after.getBooks().contains("1002"));
+	    assertEquals(0, after.getOngoingRentals().size());
+	    assertEquals("1001", before.findBookWorm());
+	    assertEquals(List.of(), before.topReaders(0));
+    }
+
+    @Test
+    public void testConsistentWhileRenting() throws Exception {
+	    LibraryManager lib = new LibraryManager();
+	    for (int i = 0; i < COPIES; i++) {
+	    	lib.addBook("Dance Dance Dance");
+	    }
+	    for (int i = 0; i < READERS; i++) {
+	    	lib.addReader("Maria", "Verdi");
+	    }
+
+	    ExecutorService executor = Executors.newFixedThreadPool(4);
+	    List<Future<?>> workers = new ArrayList<>();
+	    for (int t = 0; t < 4; t++) {
+	    	long seed = t;
+	    	workers.add(executor.submit(() -> {
+	    		Random random = new Random(seed);
+	    		for (int i = 0; i < ATTEMPTS; i++) {
+	    			String bookID = Integer.toString(1000 + random.nextInt(COPIES));
+	    			String readerID = Integer.toString(1000 + random.nextInt(READERS));
+	    			if (lib.tryStartRental(bookID, readerID, "14-07-2023") == LibStatus.OK) {
+	    				lib.tryEndRental(bookID, readerID, "15-07-2023");
+	    			}
+	    		}
+	    		return null;
+	    	}));
+	    }
+
+	    // snapshots are taken until the workers are done
+	    while (!workers.stream().allMatch(Future::isDone)) {
+	    	LibraryManager.Snapshot snapshot = lib.snapshot();
+	    	Map<String, String> ongoing = snapshot.getOngoingRentals();
+	    	assertEquals(ongoing.size(), ongoing.values().stream().distinct().count());
+	    	assertEquals(ongoing.size() == COPIES, "Not available".equals(snapshot.getAvailableBook("Dance Dance Dance")));
+	    	for (Map.Entry<String, String> rental : ongoing.entrySet()) {
+	    		assertTrue(snapshot.getRentals(rental.getValue()).get(rental.getKey()).endsWith("ONGOING"));
+	    	}
+
+	    	int total = snapshot.rentalCounts().getOrDefault("Dance Dance Dance", 0);
+	    	assertTrue(total >= ongoing.size());
+	    	assertEquals(total == 0, snapshot.findBookWorm() == null);
+	    }
+	    for (Future<?> worker : workers) {
+	    	worker.get();
+	    }
+	    executor.shutdown();
+    }
+
+}
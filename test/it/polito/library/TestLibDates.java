@@ -0,0 +1,117 @@
+package it.polito.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import org.junit.Test;
+
+public class TestLibDates {
+
+    @Test
+    public void testSameAsFormatterForYears1To9999() {
+	    StringBuilder out = new StringBuilder(10);
+	    long first = LocalDate.of(1, 1, 1).toEpochDay();
+	    long last = LocalDate.of(9999, 12, 31).toEpochDay();
+	    for (long day = first; day <= last; day++) {
+	    	String expected = LocalDate.ofEpochDay(day).format(LibDates.LIB_FORMATTER);
+	    	out.setLength(0);
+	    	LibDates.format((int) day, out);
+	    	assertEquals(expected, out.toString());
+	    	assertEquals(day, LibDates.parse(expected));
+	    }
+    }
+
+    @Test
+    public void testFallbackSameAsFormatter() {
+	    // clamped to the end of the month, out of the fast path's years, and malformed
+	    String[] dates = { "31-02-2023", "29-02-2023", "31-04-2024", "01-01-+99999", "31-12-0000", "00-01-2023",
+	    	"01-13-2023", "1-01-2023", "01/01/2023", "01-01-20a3", "" };
+	    for (String date : dates) {
+	    	String expected;
+	    	try {
+	    		expected = LocalDate.parse(date, LibDates.LIB_FORMATTER).format(LibDates.LIB_FORMATTER);
+	    	} catch (DateTimeParseException e) {
+	    		try {
+	    			LibDates.parse(date);
+	    			fail("Formatter rejects " + date);
+	    		} catch (DateTimeParseException expectedToo) {
+	    			// same as the formatter
+	    		}
+	    		continue;
+	    	}
+
+	    	StringBuilder out = new StringBuilder();
+	    	LibDates.format(LibDates.parse(date), out);
+	    	assertEquals(date, expected, out.toString());
+	    }
+    }
+
+    @Test
+    public void testTryParseSameAsParse() {
+	    String[] dates = { "12-07-2023", "31-02-2023", "01-01-+99999", "01-01-+99999999", "31-12-0000", "00-01-2023",
+	    	"01-13-2023", "1-01-2023", "01/01/2023", "01-01-20a3", "12-07-2023x", "" };
+	    for (String date : dates) {
+	    	int expected;
+	    	try {
+	    		expected = LibDates.parse(date);
+	    	} catch (DateTimeParseException e) {
+	    		expected = LibDates.INVALID;
+	    	}
+	    	assertEquals(date, expected, LibDates.tryParse(date));
+	    }
+    }
+
+    @Test
+    public void testRejectsEpochDaysOutOfRange() {
+	    try {
+	    	LibDates.parse("01-01-+99999999");
+	    	fail("Epoch day does not fit an int");
+	    } catch (DateTimeParseException e) {
+	    	// expected
+	    }
+    }
+
+    @Test
+    public void testRentalWithDateOutOfRange() throws LibException {
+	    LibraryManager lib = new LibraryManager();
+	    lib.addBook("Dance Dance Dance");
+	    lib.addReader("Maria", "Verdi");
+
+	    try {
+	    	lib.startRental("1000", "1000", "01-01-+99999999");
+	    	fail("Date out of range");
+	    } catch (DateTimeParseException e) {
+	    	// expected
+	    }
+
+	    // the rejected rental left nothing behind
+	    assertEquals(0, lib.getRentals("1000").size());
+	    lib.startRental("1000", "1000", "12-07-2023");
+	    assertEquals("12-07-2023 ONGOING", lib.getRentals("1000").get("1000"));
+    }
+
+    @Test
+    public void testTryRentalWithInvalidDate() throws LibException {
+	    LibraryManager lib = new LibraryManager();
+	    lib.addBook("Dance Dance Dance");
+	    lib.addReader("Maria", "Verdi");
+
+	    assertEquals(LibStatus.INVALID_DATE, lib.tryStartRental("1000", "1000", "12/07/2023"));
+	    assertEquals(0, lib.getRentals("1000").size());
+	    assertEquals(LibStatus.OK, lib.tryStartRental("1000", "1000", "12-07-2023"));
+
+	    assertEquals(LibStatus.INVALID_DATE, lib.tryEndRental("1000", "1000", "00-07-2023"));
+	    assertEquals("12-07-2023 ONGOING", lib.getRentals("1000").get("1000"));
+	    try {
+	    	lib.endRental("1000", "1000", "00-07-2023");
+	    	fail("Invalid date");
+	    } catch (DateTimeParseException e) {
+	    	// expected
+	    }
+	    assertEquals(LibStatus.OK, lib.tryEndRental("1000", "1000", "13-07-2023"));
+    }
+
+}
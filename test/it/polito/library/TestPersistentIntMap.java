@@ -0,0 +1,94 @@
+package it.polito.library;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestPersistentIntMap {
+
+	private static final int ROUNDS = 50;
+	private static final int OPERATIONS = 20_000;
+	private static final int VERSION_EVERY = 2_000;
+
+    @Test
+    public void testSameAsHashMap() {
+	    Random random = new Random(42);
+	    for (int round = 0; round < ROUNDS; round++) {
+	    	// small ranges make keys collide on the low bits and get removed again
+	    	int range = round % 2 == 0 ? 5_000 : Integer.MAX_VALUE;
+	    	boolean anyInt = round % 3 == 0;
+
+	    	PersistentIntMap map = PersistentIntMap.EMPTY;
+	    	Map<Integer, Integer> expected = new HashMap<>();
+	    	List<PersistentIntMap> versions = new ArrayList<>();
+	    	List<Map<Integer, Integer>> expectedVersions = new ArrayList<>();
+
+	    	for (int i = 0; i < OPERATIONS; i++) {
+	    		int key = anyInt ? random.nextInt() : random.nextInt(range);
+	    		if (random.nextInt(3) == 0) {
+	    			map = map.remove(key);
+	    			expected.remove(key);
+	    		} else {
+	    			int value = random.nextInt();
+	    			map = map.put(key, value);
+	    			expected.put(key, value);
+	    		}
+	    		assertEquals(expected.size(), map.size());
+	    		assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key, -1));
+
+	    		if (i % VERSION_EVERY == 0) {
+	    			versions.add(map);
+	    			expectedVersions.add(new HashMap<>(expected));
+	    		}
+	    	}
+
+	    	versions.add(map);
+	    	expectedVersions.add(expected);
+	    	// later changes left the older versions as they were
+	    	for (int v = 0; v < versions.size(); v++) {
+	    		assertSame(expectedVersions.get(v), versions.get(v), random);
+	    	}
+
+	    	for (int key : new ArrayList<>(expected.keySet())) {
+	    		map = map.remove(key);
+	    	}
+	    	assertEquals(0, map.size());
+	    	assertSame(Map.of(), map, random);
+	    }
+    }
+
+    @Test
+    public void testUnchangedMapReturned() {
+	    PersistentIntMap map = PersistentIntMap.EMPTY.put(1, 2);
+	    assertTrue(map == map.put(1, 2));
+	    assertTrue(map == map.remove(3));
+	    // same low bits as 1, so the lookup goes one level down
+	    assertTrue(map == map.remove(1 + 32));
+	    assertEquals(0, map.remove(1).size());
+    }
+
+	private static void assertSame(Map<Integer, Integer> expected, PersistentIntMap map, Random random) {
+		assertEquals(expected.size(), map.size());
+
+		Map<Integer, Integer> visited = new HashMap<>();
+		map.forEach((key, value) -> assertEquals(null, visited.put(key, value)));
+		assertEquals(expected, visited);
+
+		for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+			assertTrue(map.containsKey(entry.getKey()));
+			assertEquals(entry.getValue().intValue(), map.get(entry.getKey(), -1));
+		}
+		for (int i = 0; i < 100; i++) {
+			int key = random.nextInt();
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+		}
+	}
+
+}